@@ -14,8 +14,12 @@ package de.berlin.hu.chemspot;
 
 import de.berlin.hu.chemspot.ChemSpotConfiguration.Component;
 import de.berlin.hu.types.PubmedDocument;
+import de.berlin.hu.uima.ae.expander.MentionExpander;
+import de.berlin.hu.uima.ae.feature.FeatureToken;
 import de.berlin.hu.uima.ae.feature.FeatureTokenGenerator;
 import de.berlin.hu.uima.ae.feature.FeatureTokenGenerator.Feature_Phase;
+import de.berlin.hu.uima.ae.tagger.DeferredTagging;
+import de.berlin.hu.uima.ae.tagger.banner.BannerTagger;
 import de.berlin.hu.uima.ae.tagger.brics.BricsTagger;
 import de.berlin.hu.uima.ae.tagger.drug.EumedNERTagger;
 import de.berlin.hu.util.Constants;
@@ -24,13 +28,16 @@ import de.berlin.hu.util.Constants.ChemicalID;
 import org.apache.uima.UIMAException;
 import org.apache.uima.UIMAFramework;
 import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.analysis_engine.AnalysisEngineDescription;
 import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
 import org.apache.uima.cas.CAS;
 import org.apache.uima.examples.SourceDocumentInformation;
 import org.apache.uima.jcas.JCas;
+import org.apache.uima.resource.metadata.ConfigurationParameterSettings;
 import org.apache.uima.resource.metadata.TypeSystemDescription;
 import org.apache.uima.util.XMLInputSource;
 import org.u_compare.shared.semantic.NamedEntity;
+import org.u_compare.shared.syntactic.Sentence;
 import org.u_compare.shared.syntactic.Token;
 import org.uimafit.factory.AnalysisEngineFactory;
 import org.uimafit.factory.JCasFactory;
@@ -44,11 +51,16 @@ import java.io.InputStreamReader;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 import java.util.zip.GZIPInputStream;
 
 public class ChemSpot {
@@ -59,24 +71,43 @@ public class ChemSpot {
     private static Map<Long, JCas> jCases = new HashMap<Long, JCas>();
 	
     private TypeSystemDescription typeSystem;
-    private AnalysisEngine posTagger;
-    private AnalysisEngine sentenceDetector;
-    private AnalysisEngine sentenceConverter;
-    private AnalysisEngine tokenConverter;
-    private AnalysisEngine crfTagger;
-    private AnalysisEngine dictionaryTagger;
-    private AnalysisEngine chemicalFormulaTagger;
-    private AnalysisEngine abbrevTagger;
-    private AnalysisEngine drugTagger;
-    private AnalysisEngine annotationMerger;
-    private AnalysisEngine fineTokenizer;
-    private AnalysisEngine stopwordFilter;
-    private AnalysisEngine mentionExpander;
-    private AnalysisEngine normalizer;
+    private String pathToCRFModelFile;
+    private String pathToDictionaryFile;
+    private String pathToSentenceModelFile;
+    private String pathToIDs;
+    private String pathToEumedModel;
+    // engine sets that are not used by a thread at the moment, see tag(JCas)
+    private final Deque<Engines> idleEngines = new ArrayDeque<Engines>();
+    // runs the taggers of a document concurrently, null if they run one after the other
+    private ExecutorService taggerExecutor;
     private FeatureTokenGenerator featureGenerator;
     
     private ChemicalNEREvaluator evaluator;
 
+    /**
+     * The analysis engines of the pipeline. A set is used by one thread at a time, so that the engines need not be
+     * thread-safe, while the engines of all sets share their models (see CRFWrapper, BricsTagger and Normalizer).
+     */
+    private static class Engines {
+        private AnalysisEngine posTagger;
+        private AnalysisEngine sentenceDetector;
+        private AnalysisEngine sentenceConverter;
+        private AnalysisEngine crfTagger;
+        private AnalysisEngine dictionaryTagger;
+        private AnalysisEngine chemicalFormulaTagger;
+        private AnalysisEngine abbrevTagger;
+        private AnalysisEngine drugTagger;
+        private AnalysisEngine annotationMerger;
+        private AnalysisEngine fineTokenizer;
+        private AnalysisEngine stopwordFilter;
+        private AnalysisEngine mentionExpander;
+        private AnalysisEngine normalizer;
+        // whether the POS tagger only tags the sentences of mentions before the mention expander runs
+        private boolean lazyPosTagging;
+        // the taggers in the order they run
+        private List<AnalysisEngine> taggers = new ArrayList<AnalysisEngine>();
+    }
+    
     public ChemSpot() {
     	this(null, null, null, null);
     }
@@ -113,103 +144,24 @@ public class ChemSpot {
     public ChemSpot(String pathToCRFModelFile, String pathToDictionaryFile, String pathToSentenceModelFile, String pathToIDs, String pathToEumedModel) {
     	try {
     		// converting CRF and sentence model paths to URLs to allow loading of models from jar file
-    		pathToCRFModelFile = pathToCRFModelFile == null ? this.getClass().getClassLoader().getResource(CRF_MODEL_RESOURCE_PATH).toString() : new File(pathToCRFModelFile).toURI().toURL().toString(); 
-        	pathToSentenceModelFile = pathToSentenceModelFile == null ? this.getClass().getClassLoader().getResource(SENTENCE_MODEL_RESOURCE_PATH).toString() : new File(pathToSentenceModelFile).toURI().toURL().toString();
+    		this.pathToCRFModelFile = pathToCRFModelFile == null ? this.getClass().getClassLoader().getResource(CRF_MODEL_RESOURCE_PATH).toString() : new File(pathToCRFModelFile).toURI().toURL().toString(); 
+        	this.pathToSentenceModelFile = pathToSentenceModelFile == null ? this.getClass().getClassLoader().getResource(SENTENCE_MODEL_RESOURCE_PATH).toString() : new File(pathToSentenceModelFile).toURI().toURL().toString();
+            this.pathToDictionaryFile = pathToDictionaryFile;
+            this.pathToIDs = pathToIDs;
+            this.pathToEumedModel = pathToEumedModel;
     		
             typeSystem = UIMAFramework.getXMLParser().parseTypeSystemDescription(new XMLInputSource(this.getClass().getClassLoader().getResource("desc/TypeSystem.xml")));
             
-            if (ChemSpotConfiguration.useComponent(Component.TOKENIZER)) {
-	            fineTokenizer = AnalysisEngineFactory.createAnalysisEngine(UIMAFramework.getXMLParser().parseAnalysisEngineDescription(new XMLInputSource(this.getClass().getClassLoader()
-	                    .getResource("desc/ae/tokenizer/FineGrainedTokenizerAE.xml"))), CAS.NAME_DEFAULT_SOFA);
-	            tokenConverter = AnalysisEngineFactory.createPrimitive(UIMAFramework.getXMLParser().parseAnalysisEngineDescription(new XMLInputSource(this.getClass().getClassLoader()
-	                    .getResource("desc/ae/converter/OpenNLPToUCompareTokenConverterAE.xml"))));
-            }
-            
-            if (ChemSpotConfiguration.useComponent(Component.POS_TAGGER)) {
-	            posTagger = AnalysisEngineFactory.createAnalysisEngine(UIMAFramework.getXMLParser().parseAnalysisEngineDescription(new XMLInputSource(this.getClass().getClassLoader()
-	                   .getResource("desc/ae/tagger/opennlp/PosTagger.xml"))), CAS.NAME_DEFAULT_SOFA);
-            }
-            
-            if (ChemSpotConfiguration.useComponent(Component.SENTENCE_DETECTOR)) {
-	            sentenceDetector = AnalysisEngineFactory.createPrimitive(UIMAFramework.getXMLParser().parseAnalysisEngineDescription(new XMLInputSource(this.getClass().getClassLoader()
-	                    .getResource("desc/ae/tagger/opennlp/SentenceDetector.xml"))), "opennlp.uima.ModelName", pathToSentenceModelFile);
-	            sentenceConverter = AnalysisEngineFactory.createAnalysisEngine(UIMAFramework.getXMLParser().parseAnalysisEngineDescription(new XMLInputSource(this.getClass().getClassLoader()
-	                    .getResource("desc/ae/converter/OpenNLPToUCompareSentenceConverterAE.xml"))), CAS.NAME_DEFAULT_SOFA);
-            }
-            
-            if (ChemSpotConfiguration.useComponent(Component.CRF)) {
-	            System.out.println("Loading CRF...");
-	            crfTagger = AnalysisEngineFactory.createPrimitive(UIMAFramework.getXMLParser().parseAnalysisEngineDescription(new XMLInputSource(this.getClass().getClassLoader()
-	                    .getResource("desc/banner/tagger/BANNERTaggerAE.xml"))),  "BannerModelFile", pathToCRFModelFile);
-            }
-            
-            if (ChemSpotConfiguration.useComponent(Component.DICTIONARY)) {
-            	if (pathToDictionaryFile != null) {
-            		if (new File(pathToDictionaryFile).exists()) {
-            			System.out.println("Loading dictionary...");
-		                dictionaryTagger = AnalysisEngineFactory.createPrimitive(UIMAFramework.getXMLParser().parseAnalysisEngineDescription(new XMLInputSource(this.getClass().getClassLoader()
-		                        .getResource("desc/ae/tagger/BricsTaggerAE.xml"))), "DrugBankMatcherDictionaryAutomat", pathToDictionaryFile);
-            		}  else {
-             			System.out.println("Dictionary file '" + pathToDictionaryFile +  "' does not exist. Tagging without dictionary...");
-             		}
-            	} else {
-            		System.out.println("No dictionary location specified! Tagging without dictionary...");
-            	}
-            }
-            
-            if (ChemSpotConfiguration.useComponent(Component.SUM_TAGGER)) {
-	            chemicalFormulaTagger = AnalysisEngineFactory.createAnalysisEngine(UIMAFramework.getXMLParser().parseAnalysisEngineDescription(new XMLInputSource(this.getClass().getClassLoader()
-	                    .getResource("desc/ae/tagger/ChemicalFormulaTaggerAE.xml"))), CAS.NAME_DEFAULT_SOFA);
-        	}
-            
-            if (ChemSpotConfiguration.useComponent(Component.ABBREV)) {
-	            abbrevTagger = AnalysisEngineFactory.createAnalysisEngine(UIMAFramework.getXMLParser().parseAnalysisEngineDescription(new XMLInputSource(this.getClass().getClassLoader()
-	                    .getResource("desc/ae/tagger/AbbreviationTaggerAE.xml"))), CAS.NAME_DEFAULT_SOFA);
-            }
-            
-            if (ChemSpotConfiguration.useComponent(Component.EUMED_TAGGER)) {
-            	if (pathToEumedModel != null) {
-            		if (new File(pathToEumedModel).exists()) {
-            			System.out.println("Initializing multi-class tagger...");
-            			drugTagger = AnalysisEngineFactory.createPrimitive(UIMAFramework.getXMLParser().parseAnalysisEngineDescription(new XMLInputSource(this.getClass().getClassLoader()
-        	                    .getResource("desc/ae/tagger/EumedTaggerAE.xml"))), EumedNERTagger.PATH_TO_EUMED_MODEL, pathToEumedModel);
-            		}  else {
-             			System.out.println("Multi-class model file '" + pathToEumedModel +  "' does not exist. Tagging without multi-class tagger...");
-             		}
-            	} else {
-            		System.out.println("No multi-class model location specified! Tagging without multi-class tagger...");
-            	}
-            }
-            
-            if (ChemSpotConfiguration.useComponent(Component.MENTION_EXPANDER)) {
-            	mentionExpander = AnalysisEngineFactory.createAnalysisEngine(UIMAFramework.getXMLParser().parseAnalysisEngineDescription(new XMLInputSource(this.getClass().getClassLoader()
-            			.getResource("desc/ae/expander/MentionExpanderAE.xml"))), CAS.NAME_DEFAULT_SOFA);
-            }
-            
-            if (ChemSpotConfiguration.useComponent(Component.ANNOTATION_MERGER)) {
-            	annotationMerger = AnalysisEngineFactory.createAnalysisEngine(UIMAFramework.getXMLParser().parseAnalysisEngineDescription(new XMLInputSource(this.getClass().getClassLoader()
-                        .getResource("desc/ae/AnnotationMergerAE.xml"))), CAS.NAME_DEFAULT_SOFA);
-            }
-            
-            if (ChemSpotConfiguration.useComponent(Component.NORMALIZER) || ChemSpotConfiguration.useComponent(Component.CHEMHITS)) {
-            	if (pathToIDs != null) {
-            		if (new File(pathToIDs).exists()) {
-	            		normalizer = AnalysisEngineFactory.createPrimitive(UIMAFramework.getXMLParser().parseAnalysisEngineDescription(new XMLInputSource(this.getClass().getClassLoader()
-	            				.getResource("desc/ae/normalizer/NormalizerAE.xml"))), "PathToIDs", pathToIDs);
-	            		if (ChemSpotConfiguration.useComponent(Component.DICTIONARY) && ChemSpotConfiguration.initializeDictionaryFromNormalizer()) {
-	            			dictionaryTagger = AnalysisEngineFactory.createPrimitive(UIMAFramework.getXMLParser().parseAnalysisEngineDescription(new XMLInputSource(this.getClass().getClassLoader()
-			                        .getResource("desc/ae/tagger/BricsTaggerAE.xml"))), BricsTagger.PATH_TO_DICTIONARY, "");
-	            		}
-            		} else {
-            			System.out.println("Normalization ids file '" + pathToIDs +  "' does not exist. Tagging without subsequent normalization...");
+            if (ChemSpotConfiguration.isTaggingInParallel()) {
+            	taggerExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+            		public Thread newThread(Runnable r) {
+            			Thread thread = new Thread(r, "ChemSpot tagger");
+            			thread.setDaemon(true);
+            			return thread;
             		}
-            	} else System.out.println("No location for ids specified! Tagging without subsequent normalization...");
-            }
-            
-            if (ChemSpotConfiguration.useComponent(Component.STOPWORD_FILTER)) {
-	            stopwordFilter = AnalysisEngineFactory.createAnalysisEngine(UIMAFramework.getXMLParser().parseAnalysisEngineDescription(new XMLInputSource(this.getClass().getClassLoader()
-	                    .getResource("desc/ae/filter/StopwordFilterAE.xml"))), CAS.NAME_DEFAULT_SOFA);
+            	});
             }
+            idleEngines.push(createEngines());
             
             if (ChemSpotConfiguration.useComponent(Component.FEATURE_GENERATOR)) {
 	            featureGenerator = new FeatureTokenGenerator();
@@ -227,6 +179,128 @@ public class ChemSpot {
         }
     }
 
+    /**
+     * Creates a set of the analysis engines configured for the pipeline.
+     */
+    private Engines createEngines() throws UIMAException, IOException {
+    	Engines engines = new Engines();
+        if (ChemSpotConfiguration.useComponent(Component.TOKENIZER)) {
+            engines.fineTokenizer = AnalysisEngineFactory.createAnalysisEngine(UIMAFramework.getXMLParser().parseAnalysisEngineDescription(new XMLInputSource(this.getClass().getClassLoader()
+                    .getResource("desc/ae/tokenizer/FineGrainedTokenizerAE.xml"))), CAS.NAME_DEFAULT_SOFA);
+        }
+        
+        if (ChemSpotConfiguration.useComponent(Component.SENTENCE_DETECTOR)) {
+            if ("RULES".equals(ChemSpotConfiguration.getSentenceDetectorEngine())) {
+                engines.sentenceDetector = AnalysisEngineFactory.createPrimitive(UIMAFramework.getXMLParser().parseAnalysisEngineDescription(new XMLInputSource(this.getClass().getClassLoader()
+                        .getResource("desc/ae/sentence/SentenceSplitterAE.xml"))));
+            } else {
+                engines.sentenceDetector = AnalysisEngineFactory.createPrimitive(UIMAFramework.getXMLParser().parseAnalysisEngineDescription(new XMLInputSource(this.getClass().getClassLoader()
+                        .getResource("desc/ae/tagger/opennlp/SentenceDetector.xml"))), "opennlp.uima.ModelName", pathToSentenceModelFile);
+            }
+            engines.sentenceConverter = AnalysisEngineFactory.createAnalysisEngine(UIMAFramework.getXMLParser().parseAnalysisEngineDescription(new XMLInputSource(this.getClass().getClassLoader()
+                    .getResource("desc/ae/converter/OpenNLPToUCompareSentenceConverterAE.xml"))), CAS.NAME_DEFAULT_SOFA);
+        }
+        
+        if (ChemSpotConfiguration.useComponent(Component.CRF)) {
+            System.out.println("Loading CRF...");
+            engines.crfTagger = AnalysisEngineFactory.createPrimitive(UIMAFramework.getXMLParser().parseAnalysisEngineDescription(new XMLInputSource(this.getClass().getClassLoader()
+                    .getResource("desc/banner/tagger/BANNERTaggerAE.xml"))),  "BannerModelFile", pathToCRFModelFile, BannerTagger.PARALLEL, ChemSpotConfiguration.isCrfParallel());
+        }
+        
+        if (ChemSpotConfiguration.useComponent(Component.DICTIONARY)) {
+        	if (pathToDictionaryFile != null) {
+        		if (new File(pathToDictionaryFile).exists()) {
+        			System.out.println("Loading dictionary...");
+	                engines.dictionaryTagger = AnalysisEngineFactory.createPrimitive(UIMAFramework.getXMLParser().parseAnalysisEngineDescription(new XMLInputSource(this.getClass().getClassLoader()
+	                        .getResource("desc/ae/tagger/BricsTaggerAE.xml"))), "DrugBankMatcherDictionaryAutomat", pathToDictionaryFile,
+	                        BricsTagger.LEFTMOST_LONGEST, ChemSpotConfiguration.isDictionaryLeftmostLongest(), BricsTagger.BOUNDARY, ChemSpotConfiguration.getDictionaryBoundary(),
+	                        BricsTagger.CASE_INSENSITIVE, ChemSpotConfiguration.isDictionaryCaseInsensitive(), BricsTagger.ENGINE, ChemSpotConfiguration.getDictionaryEngine());
+        		}  else {
+         			System.out.println("Dictionary file '" + pathToDictionaryFile +  "' does not exist. Tagging without dictionary...");
+         		}
+        	} else {
+        		System.out.println("No dictionary location specified! Tagging without dictionary...");
+        	}
+        }
+        
+        if (ChemSpotConfiguration.useComponent(Component.SUM_TAGGER)) {
+            engines.chemicalFormulaTagger = AnalysisEngineFactory.createAnalysisEngine(UIMAFramework.getXMLParser().parseAnalysisEngineDescription(new XMLInputSource(this.getClass().getClassLoader()
+                    .getResource("desc/ae/tagger/ChemicalFormulaTaggerAE.xml"))), CAS.NAME_DEFAULT_SOFA);
+    	}
+        
+        if (ChemSpotConfiguration.useComponent(Component.ABBREV)) {
+            engines.abbrevTagger = AnalysisEngineFactory.createAnalysisEngine(UIMAFramework.getXMLParser().parseAnalysisEngineDescription(new XMLInputSource(this.getClass().getClassLoader()
+                    .getResource("desc/ae/tagger/AbbreviationTaggerAE.xml"))), CAS.NAME_DEFAULT_SOFA);
+        }
+        
+        if (ChemSpotConfiguration.useComponent(Component.EUMED_TAGGER)) {
+        	if (pathToEumedModel != null) {
+        		if (new File(pathToEumedModel).exists()) {
+        			System.out.println("Initializing multi-class tagger...");
+        			engines.drugTagger = AnalysisEngineFactory.createPrimitive(UIMAFramework.getXMLParser().parseAnalysisEngineDescription(new XMLInputSource(this.getClass().getClassLoader()
+    	                    .getResource("desc/ae/tagger/EumedTaggerAE.xml"))), EumedNERTagger.PATH_TO_EUMED_MODEL, pathToEumedModel);
+        		}  else {
+         			System.out.println("Multi-class model file '" + pathToEumedModel +  "' does not exist. Tagging without multi-class tagger...");
+         		}
+        	} else {
+        		System.out.println("No multi-class model location specified! Tagging without multi-class tagger...");
+        	}
+        }
+        
+        if (ChemSpotConfiguration.useComponent(Component.MENTION_EXPANDER)) {
+        	engines.mentionExpander = AnalysisEngineFactory.createAnalysisEngine(UIMAFramework.getXMLParser().parseAnalysisEngineDescription(new XMLInputSource(this.getClass().getClassLoader()
+        			.getResource("desc/ae/expander/MentionExpanderAE.xml"))), CAS.NAME_DEFAULT_SOFA);
+        }
+        
+        // the POS tags are only read by the mention expander and the multi-class tagger
+        if (ChemSpotConfiguration.useComponent(Component.POS_TAGGER) && (engines.mentionExpander != null || engines.drugTagger != null)) {
+            AnalysisEngineDescription posTaggerDescription = UIMAFramework.getXMLParser().parseAnalysisEngineDescription(new XMLInputSource(this.getClass().getClassLoader()
+                   .getResource("desc/ae/tagger/opennlp/PosTagger.xml")));
+            // the tags are written to the labels of the tokens of the fine-grained tokenizer, there are no OpenNLP tokens
+            ConfigurationParameterSettings posTaggerSettings = posTaggerDescription.getAnalysisEngineMetaData().getConfigurationParameterSettings();
+            posTaggerSettings.setParameterValue("opennlp.uima.TokenType", Token.class.getName());
+            posTaggerSettings.setParameterValue("opennlp.uima.POSFeature", "label");
+            engines.posTagger = AnalysisEngineFactory.createAnalysisEngine(posTaggerDescription, CAS.NAME_DEFAULT_SOFA);
+            // the multi-class tagger reads the tags of every sentence, the mention expander only those around its mentions
+            engines.lazyPosTagging = ChemSpotConfiguration.isPosTaggerLazy() && engines.drugTagger == null;
+        }
+        
+        if (ChemSpotConfiguration.useComponent(Component.ANNOTATION_MERGER)) {
+        	engines.annotationMerger = AnalysisEngineFactory.createAnalysisEngine(UIMAFramework.getXMLParser().parseAnalysisEngineDescription(new XMLInputSource(this.getClass().getClassLoader()
+                    .getResource("desc/ae/AnnotationMergerAE.xml"))), CAS.NAME_DEFAULT_SOFA);
+        }
+        
+        if (ChemSpotConfiguration.useComponent(Component.NORMALIZER) || ChemSpotConfiguration.useComponent(Component.CHEMHITS)) {
+        	if (pathToIDs != null) {
+        		if (new File(pathToIDs).exists()) {
+            		engines.normalizer = AnalysisEngineFactory.createPrimitive(UIMAFramework.getXMLParser().parseAnalysisEngineDescription(new XMLInputSource(this.getClass().getClassLoader()
+            				.getResource("desc/ae/normalizer/NormalizerAE.xml"))), "PathToIDs", pathToIDs);
+            		if (ChemSpotConfiguration.useComponent(Component.DICTIONARY) && ChemSpotConfiguration.initializeDictionaryFromNormalizer()) {
+            			engines.dictionaryTagger = AnalysisEngineFactory.createPrimitive(UIMAFramework.getXMLParser().parseAnalysisEngineDescription(new XMLInputSource(this.getClass().getClassLoader()
+		                        .getResource("desc/ae/tagger/BricsTaggerAE.xml"))), BricsTagger.PATH_TO_DICTIONARY, "", BricsTagger.IDS, pathToIDs,
+		                        BricsTagger.LEFTMOST_LONGEST, ChemSpotConfiguration.isDictionaryLeftmostLongest(), BricsTagger.BOUNDARY, ChemSpotConfiguration.getDictionaryBoundary(),
+	                        BricsTagger.CASE_INSENSITIVE, ChemSpotConfiguration.isDictionaryCaseInsensitive(), BricsTagger.ENGINE, ChemSpotConfiguration.getDictionaryEngine());
+            		}
+        		} else {
+        			System.out.println("Normalization ids file '" + pathToIDs +  "' does not exist. Tagging without subsequent normalization...");
+        		}
+        	} else System.out.println("No location for ids specified! Tagging without subsequent normalization...");
+        }
+        
+        if (ChemSpotConfiguration.useComponent(Component.STOPWORD_FILTER)) {
+            engines.stopwordFilter = AnalysisEngineFactory.createAnalysisEngine(UIMAFramework.getXMLParser().parseAnalysisEngineDescription(new XMLInputSource(this.getClass().getClassLoader()
+                    .getResource("desc/ae/filter/StopwordFilterAE.xml"))), CAS.NAME_DEFAULT_SOFA);
+        }
+        
+        for (AnalysisEngine tagger : new AnalysisEngine[] {engines.crfTagger, engines.dictionaryTagger, engines.chemicalFormulaTagger, engines.abbrevTagger, engines.drugTagger}) {
+        	if (tagger != null) {
+        		engines.taggers.add(tagger);
+        	}
+        }
+        
+    	return engines;
+    }
+
     /**
      * Returns all mentions (non-goldstandard entities) from a jcas object.
      * 
@@ -368,87 +442,197 @@ public class ChemSpot {
     	}
     }
     
+    /**
+     * Returns an engine set that is not used by another thread, creating a new one if all sets are in use. Every thread
+     * tagging at the same time thus works with its own engines.
+     */
+    private Engines takeEngines() {
+    	synchronized (idleEngines) {
+    		if (!idleEngines.isEmpty()) {
+    			return idleEngines.pop();
+    		}
+    	}
+    	// the engines are created one after another, so that the shared models are only loaded once
+    	synchronized (this) {
+    		try {
+    			return createEngines();
+    		} catch (UIMAException e) {
+    			throw new RuntimeException(e);
+    		} catch (IOException e) {
+    			throw new RuntimeException(e);
+    		}
+    	}
+    }
+    
+    private void releaseEngines(Engines engines) {
+    	synchronized (idleEngines) {
+    		idleEngines.push(engines);
+    	}
+    }
+    
+    /**
+     * Runs the POS tagger on the sentences overlapping the span in which the mention expander reads the POS tags
+     * around a mention it may expand, the only tags read in lazy mode. The sentence converter removed the OpenNLP
+     * sentences, so the sentences are passed to the tagger as temporary OpenNLP sentences.
+     */
+    private static void tagCandidateSentences(JCas jcas, Engines engines) throws AnalysisEngineProcessException {
+    	List<Sentence> sentences = new ArrayList<Sentence>(JCasUtil.select(jcas, Sentence.class));
+    	boolean[] isCandidate = new boolean[sentences.size()];
+    	for (NamedEntity entity : JCasUtil.iterate(jcas, NamedEntity.class)) {
+    		if (!MentionExpander.isExpandable(entity)) {
+    			continue;
+    		}
+    		int[] span = MentionExpander.getExpandedSpan(entity);
+    		// the sentences are sorted and do not overlap, so the first sentence ending after the span begins is searched
+    		int low = 0;
+    		int high = sentences.size();
+    		while (low < high) {
+    			int middle = (low + high) >>> 1;
+    			if (sentences.get(middle).getEnd() <= span[0]) {
+    				low = middle + 1;
+    			} else {
+    				high = middle;
+    			}
+    		}
+    		for (int i = low; i < sentences.size() && sentences.get(i).getBegin() < span[1]; i++) {
+    			isCandidate[i] = true;
+    		}
+    	}
+    	
+    	List<opennlp.uima.Sentence> candidates = new ArrayList<opennlp.uima.Sentence>();
+    	for (int i = 0; i < sentences.size(); i++) {
+    		if (isCandidate[i]) {
+    			opennlp.uima.Sentence candidate = new opennlp.uima.Sentence(jcas, sentences.get(i).getBegin(), sentences.get(i).getEnd());
+    			candidate.addToIndexes();
+    			candidates.add(candidate);
+    		}
+    	}
+    	if (candidates.isEmpty()) {
+    		return;
+    	}
+    	
+    	engines.posTagger.process(jcas);
+    	for (opennlp.uima.Sentence candidate : candidates) {
+    		candidate.removeFromIndexes();
+    	}
+    }
+    
+    /**
+     * Runs the taggers of a document at the same time, since the taggers do not read each other's entities. Every
+     * tagger reads what it needs from the document on this thread and tags on the executor (see DeferredTagging).
+     * The entities are added to the document afterwards by this thread, tagger by tagger in the order the taggers
+     * run in otherwise, as a CAS must only be read and changed by one thread.
+     */
+    private void tagInParallel(JCas jcas, Engines engines) throws AnalysisEngineProcessException {
+    	DeferredTagging tagging = DeferredTagging.begin(taggerExecutor);
+    	try {
+    		for (AnalysisEngine tagger : engines.taggers) {
+    			tagger.process(jcas);
+    		}
+    	} finally {
+    		// waits for the taggers started so far even if one failed, so that none still runs afterwards
+    		tagging.end();
+    	}
+    	tagging.addTo(jcas);
+    }
+    
     /**
      * Finds chemical entities in the document of a {@code JCas} object and returns a list of mentions.
      * @param jcas contains the document text
      * @return a list of mentions
      */
     public List<Mention> tag(JCas jcas) {
+    	return tag(jcas, null);
+    }
+    
+    /**
+     * Finds chemical entities like {@link #tag(JCas)} and adds the feature tokens generated for the document to
+     * {@code featureTokens}, if the feature generator is used. The feature generator itself only keeps them while
+     * the document is tagged.
+     * @param jcas contains the document text
+     * @param featureTokens the list to which the feature tokens are added, or null
+     * @return a list of mentions
+     */
+    public List<Mention> tag(JCas jcas, List<FeatureToken> featureTokens) {
     	List<NamedEntity> otherEntities = null;
+    	Engines engines = takeEngines();
     	startTimer();
         try {
-        	if (fineTokenizer != null) {
-        		fineTokenizer.process(jcas);
+        	if (engines.fineTokenizer != null) {
+        		engines.fineTokenizer.process(jcas);
         		printTime("tokenization");
         	}
         	
-            synchronized (this) {
-            	if (sentenceDetector != null) {
-            		sentenceDetector.process(jcas);
-            		printTime("sentence detector");
-            	}
-            	if (posTagger != null) {
-            		posTagger.process(jcas);
-            		printTime("POS tagger");
-            	}
+            if (engines.sentenceDetector != null) {
+            	engines.sentenceDetector.process(jcas);
+            	printTime("sentence detector");
             }
-            if (tokenConverter != null) {
-            	tokenConverter.process(jcas);
-            	printTime("token converter");
+            if (engines.posTagger != null && !engines.lazyPosTagging) {
+            	engines.posTagger.process(jcas);
+            	printTime("POS tagger");
             }
-            if (sentenceConverter != null) {
-            	sentenceConverter.process(jcas);
+            if (engines.sentenceConverter != null) {
+            	engines.sentenceConverter.process(jcas);
             	printTime("sentence converter");
             }
-            if (crfTagger != null) {
-            	crfTagger.process(jcas);
-            	printTime("crf tagger");
-            }
-            if (dictionaryTagger != null) {
-            	dictionaryTagger.process(jcas);
-            	printTime("dictionary tagger");
-            }
-            if (chemicalFormulaTagger != null) {
-            	chemicalFormulaTagger.process(jcas);
-            	printTime("chemical formula tagger");
-            }
-            if (abbrevTagger != null) {
-            	abbrevTagger.process(jcas);
-            	printTime("abbreviation tagger");
-            }
-            if (drugTagger != null) {
-            	drugTagger.process(jcas);
-            	printTime("drug tagger");
+            if (taggerExecutor != null && engines.taggers.size() > 1) {
+            	tagInParallel(jcas, engines);
+            	printTime("taggers (in parallel)");
+            } else {
+	            if (engines.crfTagger != null) {
+	            	engines.crfTagger.process(jcas);
+	            	printTime("crf tagger");
+	            }
+	            if (engines.dictionaryTagger != null) {
+	            	engines.dictionaryTagger.process(jcas);
+	            	printTime("dictionary tagger");
+	            }
+	            if (engines.chemicalFormulaTagger != null) {
+	            	engines.chemicalFormulaTagger.process(jcas);
+	            	printTime("chemical formula tagger");
+	            }
+	            if (engines.abbrevTagger != null) {
+	            	engines.abbrevTagger.process(jcas);
+	            	printTime("abbreviation tagger");
+	            }
+	            if (engines.drugTagger != null) {
+	            	engines.drugTagger.process(jcas);
+	            	printTime("drug tagger");
+	            }
             }
             if (featureGenerator != null) {
-            	if (normalizer != null) {
-            		normalizer.process(jcas);
+            	if (engines.normalizer != null) {
+            		engines.normalizer.process(jcas);
             	}
             	featureGenerator.process(jcas, Feature_Phase.PHASE1);
             	printTime("feature generation phase 1 (+ preliminary normalization run)");
             }
-            if (stopwordFilter != null) {
-            	//stopwordFilter.process(jcas);
+            if (engines.stopwordFilter != null) {
+            	//engines.stopwordFilter.process(jcas);
             	printTime("stopword filter");
             }
-            if (mentionExpander != null) {
-            	mentionExpander.process(jcas);
+            if (engines.mentionExpander != null) {
+            	if (engines.lazyPosTagging) {
+            		tagCandidateSentences(jcas, engines);
+            		printTime("POS tagger (candidate sentences)");
+            	}
+            	engines.mentionExpander.process(jcas);
             	printTime("mention expander");
             }
             if (featureGenerator != null) {
             	featureGenerator.process(jcas, Feature_Phase.PHASE2);
             	printTime("feature generator phase 2");
             }
-            if (annotationMerger != null) {
-            	annotationMerger.process(jcas);
+            if (engines.annotationMerger != null) {
+            	engines.annotationMerger.process(jcas);
             	printTime("annotation merger");
             }
             if (featureGenerator != null) {
             	featureGenerator.process(jcas, Feature_Phase.PHASE3);
             	printTime("feature generator phase 3");
             }
-            if (normalizer != null) {
-            	normalizer.process(jcas);
+            if (engines.normalizer != null) {
+            	engines.normalizer.process(jcas);
             	printTime("normalizer");
             }
             if (featureGenerator != null) {
@@ -459,6 +643,13 @@ public class ChemSpot {
             System.err.println("Failed to extract chemicals from text.");
             e.printStackTrace();
         } finally {
+        	releaseEngines(engines);
+        	if (featureGenerator != null) {
+        		List<FeatureToken> documentFeatureTokens = featureGenerator.removeFeatureTokens(jcas);
+        		if (documentFeatureTokens != null && featureTokens != null) {
+        			featureTokens.addAll(documentFeatureTokens);
+        		}
+        	}
         	if (otherEntities != null && !otherEntities.isEmpty()) {
         		for (NamedEntity ne : otherEntities) {
         			ne.addToIndexes();
@@ -36,11 +36,23 @@ public class ChemSpotConfiguration {
 	private static final String DETAILED_EVALUATION = "evaluation.detailed";
 	private static final String THREADING = "threading";
 	private static final String THREAD_NR = "threading.number_of_threads";
+	private static final String THREADING_TAGGERS = "threading.taggers";
 	private static final int DEFAULT_THREAD_NR = 4;
 	
 	private static final String COMPONENT_PREFIX = "component.";
+	private static final String SENTENCE_DETECTOR_ENGINE = COMPONENT_PREFIX + Component.SENTENCE_DETECTOR.toString().toLowerCase() + ".engine";
+	private static final String CRF_PARALLEL = COMPONENT_PREFIX + Component.CRF.toString().toLowerCase() + ".parallel";
+	private static final String POS_TAGGER_LAZY = COMPONENT_PREFIX + Component.POS_TAGGER.toString().toLowerCase() + ".lazy";
 	private static final String DICTIONARY_INITIALIZE_FROM_NORMALIZER = COMPONENT_PREFIX + Component.DICTIONARY.toString().toLowerCase() + ".initializeFromNormalizer";
+	private static final String DICTIONARY_LEFTMOST_LONGEST = COMPONENT_PREFIX + Component.DICTIONARY.toString().toLowerCase() + ".leftmostLongest";
+	private static final String DICTIONARY_CASE_INSENSITIVE = COMPONENT_PREFIX + Component.DICTIONARY.toString().toLowerCase() + ".caseInsensitive";
+	private static final String DICTIONARY_BOUNDARY = COMPONENT_PREFIX + Component.DICTIONARY.toString().toLowerCase() + ".boundary";
+	private static final String DICTIONARY_ENGINE = COMPONENT_PREFIX + Component.DICTIONARY.toString().toLowerCase() + ".engine";
 	private static final String DICTIONARY_FILTER_LENGTH = COMPONENT_PREFIX + Component.DICTIONARY.toString().toLowerCase() + ".filterLength";
+	private static final String NORMALIZER_FUZZY = COMPONENT_PREFIX + Component.NORMALIZER.toString().toLowerCase() + ".fuzzy";
+	private static final String NORMALIZER_FUZZY_THRESHOLD = COMPONENT_PREFIX + Component.NORMALIZER.toString().toLowerCase() + ".fuzzyThreshold";
+	private static final String NORMALIZER_CACHE_SIZE = COMPONENT_PREFIX + Component.NORMALIZER.toString().toLowerCase() + ".cacheSize";
+	private static final String OPSIN_CACHE_SIZE = COMPONENT_PREFIX + Component.OPSIN.toString().toLowerCase() + ".cacheSize";
 	
 	private static final String ANNOTATIONS_PREFIX = "annotation.";
 	private static final String ANNOTATIONS_PREFIX_EUMED = "annotation.eumed.";
@@ -51,6 +63,8 @@ public class ChemSpotConfiguration {
 	private static final String UPDATE_CHEBI_MUST_CONTAIN_FORMULA = UPDATE_PREFIX + "chebi.mustContainFormula";
 	private static final String UPDATE_PUBCHEM_SDF_URL = UPDATE_PREFIX + "pubchem.sdf.url";
 	private static final String UPDATE_PUBCHEM_MAX_LENGTH = UPDATE_PREFIX + "pubchem.maxLength";
+	private static final String UPDATE_INCREMENTAL = UPDATE_PREFIX + "incremental";
+	private static final String UPDATE_MAX_OVERLAYS = UPDATE_PREFIX + "maxOverlays";
 	
 	// Variables
 	private static Properties properties = null;
@@ -167,18 +181,66 @@ public class ChemSpotConfiguration {
 		return isAnnotate(type) && "true".equals(getProperty(ANNOTATIONS_PREFIX_EUMED + type.toString().toLowerCase(), defaultValue).toLowerCase().trim());
 	}
 	
+	public static boolean isPosTaggerLazy() {
+		return "true".equals(getProperty(POS_TAGGER_LAZY, "true").toLowerCase().trim());
+	}
+	
+	public static String getSentenceDetectorEngine() {
+		return getProperty(SENTENCE_DETECTOR_ENGINE, "genia").trim().toUpperCase();
+	}
+	
+	public static boolean isCrfParallel() {
+		return "true".equals(getProperty(CRF_PARALLEL, "false").toLowerCase().trim());
+	}
+	
 	public static boolean initializeDictionaryFromNormalizer() {
 		return "true".equals(getProperty(DICTIONARY_INITIALIZE_FROM_NORMALIZER, "false").toLowerCase());
 	}
 	
+	public static boolean isDictionaryLeftmostLongest() {
+		return "true".equals(getProperty(DICTIONARY_LEFTMOST_LONGEST, "false").toLowerCase().trim());
+	}
+	
+	public static boolean isDictionaryCaseInsensitive() {
+		return "true".equals(getProperty(DICTIONARY_CASE_INSENSITIVE, "false").toLowerCase().trim());
+	}
+	
+	public static String getDictionaryBoundary() {
+		return getProperty(DICTIONARY_BOUNDARY, "character").trim().toUpperCase();
+	}
+	
+	public static String getDictionaryEngine() {
+		return getProperty(DICTIONARY_ENGINE, "brics").trim().toUpperCase();
+	}
+	
 	public static int getDictionaryFilterLength() {
 		return Integer.parseInt(getProperty(DICTIONARY_FILTER_LENGTH, "-1").toLowerCase());
 	}
 
+	public static boolean isNormalizerFuzzy() {
+		return "true".equals(getProperty(NORMALIZER_FUZZY, "false").toLowerCase().trim());
+	}
+	
+	public static float getNormalizerFuzzyThreshold() {
+		return Float.parseFloat(getProperty(NORMALIZER_FUZZY_THRESHOLD, "0.7").trim());
+	}
+	
+	public static int getNormalizerCacheSize() {
+		return Integer.parseInt(getProperty(NORMALIZER_CACHE_SIZE, "100000").trim());
+	}
+	
+	public static int getOpsinCacheSize() {
+		return Integer.parseInt(getProperty(OPSIN_CACHE_SIZE, "100000").trim());
+	}
+	
 	public static boolean isThreading() {
 		return "true".equals(getProperty(THREADING));
 	}
 
+	public static boolean isTaggingInParallel() {
+		return "true".equals(getProperty(THREADING_TAGGERS, "false").toLowerCase().trim());
+	}
+
 	public static int getNumberOfThreads() {
 		try {
 			return Integer.valueOf(getProperty(THREAD_NR, DEFAULT_THREAD_NR + ""));
@@ -225,4 +287,12 @@ public class ChemSpotConfiguration {
 	public static boolean isRemoveTemporaryUpdateFiles() {
 		return "true".equals(getProperty(UPDATE_REMOVE_TEMPORARY_FILES, "false"));
 	}
+	
+	public static boolean isIncrementalUpdate() {
+		return "true".equals(getProperty(UPDATE_INCREMENTAL, "false").toLowerCase().trim());
+	}
+	
+	public static int getMaxUpdateOverlays() {
+		return Integer.parseInt(getProperty(UPDATE_MAX_OVERLAYS, "4").trim());
+	}
 }
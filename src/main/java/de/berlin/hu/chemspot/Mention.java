@@ -16,6 +16,7 @@ import de.berlin.hu.util.Constants;
 import de.berlin.hu.util.Constants.ChemicalID;
 import de.berlin.hu.util.Constants.ChemicalType;
 
+import org.apache.uima.jcas.cas.StringArray;
 import org.apache.uima.jcas.tcas.Annotation;
 import org.u_compare.shared.semantic.NamedEntity;
 
@@ -23,7 +24,10 @@ public class Mention implements Comparable<Object> {
 	private int start;
 	private int end;
 	private String text;
-	private String[] ids;
+	//the ids are only read from one of the sources when they are first accessed
+	private String[] ids = null;
+	private String idString = null;
+	private String[] rawIds = null;
 	private String source;
 	private String documentText;
 	private ChemicalType type;
@@ -40,17 +44,7 @@ public class Mention implements Comparable<Object> {
 		this.start = start;
 		this.end = end;
 		this.text = text;
-		this.ids = new String[ChemicalID.values().length];
-        if (ids != null) {
-            String tempIds = ids;
-            if (tempIds.startsWith("[")) tempIds = tempIds.substring(1);
-            if (tempIds.endsWith("]")) tempIds = tempIds.substring(0, tempIds.length() - 1);
-            int i = 0;
-            for (String id : tempIds.split(", |,$|^,")) {
-            	if (i >= this.ids.length) break;
-            	setId(ChemicalID.values()[i++], id.trim());
-            }
-        }
+		this.idString = ids;
        	
         this.documentText = documentText;
         setSource(source);
@@ -69,8 +63,42 @@ public class Mention implements Comparable<Object> {
     	this(start, end, null);
     }
 
+    /**
+     * Represents a named entity. Its ids are taken from its ids array as set by the normalizer if there is one,
+     * otherwise from its id string (e.g. as set by corpus readers).
+     */
     public Mention(NamedEntity entity) {
-        this(entity.getBegin(), entity.getEnd(), entity.getCoveredText(), entity.getId(), entity.getSource(), entity.getCAS().getDocumentText(), ChemicalType.fromString(entity.getEntityType()));
+        this(entity.getBegin(), entity.getEnd(), entity.getCoveredText(), null, entity.getSource(), entity.getCAS().getDocumentText(), ChemicalType.fromString(entity.getEntityType()));
+        //the array is copied as the CAS may be reset before the ids are accessed
+        StringArray idArray = entity.getIds();
+        if (idArray != null) {
+        	this.rawIds = idArray.toArray();
+        } else {
+        	this.idString = entity.getId();
+        }
+    }
+    
+    private String[] ids() {
+    	if (ids == null) {
+    		ids = new String[ChemicalID.values().length];
+    		if (rawIds != null) {
+    			for (int i = 0; i < rawIds.length && i < ids.length; i++) {
+    				setId(ChemicalID.values()[i], rawIds[i]);
+    			}
+    		} else if (idString != null) {
+    			String tempIds = idString;
+    			if (tempIds.startsWith("[")) tempIds = tempIds.substring(1);
+    			if (tempIds.endsWith("]")) tempIds = tempIds.substring(0, tempIds.length() - 1);
+    			int i = 0;
+    			for (String id : tempIds.split(", |,$|^,")) {
+    				if (i >= ids.length) break;
+    				setId(ChemicalID.values()[i++], id.trim());
+    			}
+    		}
+    		rawIds = null;
+    		idString = null;
+    	}
+    	return ids;
     }
 
     public int getStart() {
@@ -89,7 +117,7 @@ public class Mention implements Comparable<Object> {
 		return text;
 	}
 	public String[] getIds() {
-		return ids;
+		return ids();
 	}
 	public String getSource() {
 		return source;
@@ -157,7 +185,7 @@ public class Mention implements Comparable<Object> {
     public String getId(ChemicalID type) {
         String id = null;
         try {
-          id = ids[type.ordinal()];
+          id = ids()[type.ordinal()];
         } catch (ArrayIndexOutOfBoundsException e) {
             //ignore
         }
@@ -226,7 +254,7 @@ public class Mention implements Comparable<Object> {
     	}
     	
         try {
-          ids[type.ordinal()] = id != null ? id.trim() : null;
+          ids()[type.ordinal()] = id != null ? id.trim() : null;
         } catch (ArrayIndexOutOfBoundsException e) {
             //ignore
         }
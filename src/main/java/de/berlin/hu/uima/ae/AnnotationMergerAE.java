@@ -236,6 +236,7 @@ public class AnnotationMergerAE extends JCasAnnotator_ImplBase {
 			Chemical chemical = new Chemical(aJCas, entity.getBegin(), entity.getEnd());
 			chemical.setSource(entity.getSource());
 			chemical.setId(/*entity.getSource() + ": " + */entity.getId());
+			chemical.setIds(entity.getIds());
 			chemical.setConfidence(entity.getConfidence());
 			chemical.setEntityType(entity.getEntityType());
 			chemical.addToIndexes();
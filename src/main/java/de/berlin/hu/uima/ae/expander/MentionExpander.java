@@ -14,31 +14,53 @@ import de.berlin.hu.util.Constants;
 
 public class MentionExpander extends JCasAnnotator_ImplBase {
 
-	private static NamedEntity expandEntity(NamedEntity ne) {
+	/**
+	 * @return whether the character at {@code index} exists and belongs to the word of an adjacent entity,
+	 * i.e. is neither whitespace nor a slash or period
+	 */
+	private static boolean isWordChar(String text, int index) {
+		return index >= 0 && index < text.length() && "\t\n\u000B\f\r /.".indexOf(text.charAt(index)) < 0;
+	}
+	
+	/**
+	 * @return the begin and end of an entity expanded to the whole words it is part of, the span in which the
+	 * mention expander reads the tokens and their POS tags
+	 */
+	public static int[] getExpandedSpan(NamedEntity ne) {
 		String text = ne.getCAS().getDocumentText();
 		int begin = ne.getBegin();
 		int end = ne.getEnd();
 		
-		boolean changed = true;
-		while (changed) {
-			changed = false;
-			if (begin-1 > 0 && (text.charAt(begin-1) + "").matches("[^\\s/\\.]")) {
-				begin--;
-				changed = true;
-			}
-			if (end < text.length() && (text.charAt(end) + "").matches("[^\\s/\\.]")) {
-				end++;
-				changed = true;
-			}
+		while (isWordChar(text, begin-1)) {
+			begin--;
+		}
+		while (isWordChar(text, end)) {
+			end++;
 		}
 		
+		return new int[] {begin, end};
+	}
+	
+	private static NamedEntity expandEntity(NamedEntity ne) {
+		int[] span = getExpandedSpan(ne);
+		
 		NamedEntity result = (NamedEntity)ne.clone();
-		result.setBegin(begin);
-		result.setEnd(end);
+		result.setBegin(span[0]);
+		result.setEnd(span[1]);
 		
 		return result;
 	}
 	
+	/**
+	 * @return whether the mention expander may expand an entity, and thus reads the POS tags around it
+	 */
+	public static boolean isExpandable(NamedEntity ne) {
+		if (Constants.CRF.equals(ne.getSource())) return false;
+		
+		String text = ne.getCAS().getDocumentText();
+		return isWordChar(text, ne.getBegin()-1) || isWordChar(text, ne.getEnd());
+	}
+	
 	private static int countChar(char c, String s) {
 		int result = 0;
 		
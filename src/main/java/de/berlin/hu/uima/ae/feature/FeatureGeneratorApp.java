@@ -1,6 +1,7 @@
 package de.berlin.hu.uima.ae.feature;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -59,10 +60,11 @@ public class FeatureGeneratorApp {
         pd.setPmid("");
         pd.addToIndexes(jcas);
         
-		chemspot.tag(jcas);
+		List<FeatureToken> featureTokens = new ArrayList<FeatureToken>();
+		chemspot.tag(jcas, featureTokens);
 		System.out.println(ChemSpot.serializeAnnotations(jcas));
         
-        return chemspot.getFeatureTokenGenerator().getFeatureTokens(jcas);
+        return featureTokens;
 	}
 	
 	public static void main(String[] args) throws InvalidXMLException, IOException {
@@ -5,6 +5,7 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -58,7 +59,7 @@ public class FeatureTokenGenerator {
 		CHEMICAL_SUFFIX;
 	};
 	
-	private Map<Integer, List<FeatureToken>> tokens = null;
+	private Map<JCas, List<FeatureToken>> tokens = null;
 	
 	private Map<String, Integer> chebiMinDepth = null;
 	private Map<String, Integer> chebiAvgDepth = null;
@@ -201,7 +202,8 @@ public class FeatureTokenGenerator {
 		System.out.println();
 		System.out.println("Initializing feature generator.");
 		
-		tokens = new HashMap<Integer, List<FeatureToken>>();
+		//documents of several threads are processed at the same time, and documents with the same text must not share tokens
+		tokens = new IdentityHashMap<JCas, List<FeatureToken>>();
 		
 		if (chebiMinDepth == null) {
 			try {
@@ -246,7 +248,9 @@ public class FeatureTokenGenerator {
 	public void process(JCas aJCas, Feature_Phase phase) throws AnalysisEngineProcessException {
 		switch (phase) {
 		case PHASE1:
-			tokens.put(aJCas.getDocumentText().hashCode(), new ArrayList<FeatureToken>());
+			synchronized (tokens) {
+				tokens.put(aJCas, new ArrayList<FeatureToken>());
+			}
 			generateFeatureTokens(aJCas);
 			checkNormalization(aJCas);
 			break;
@@ -267,7 +271,9 @@ public class FeatureTokenGenerator {
 	}
 	
 	public void clearFeatureTokens() {
-		tokens.clear();
+		synchronized (tokens) {
+			tokens.clear();
+		}
 	}
 	
 	private void generateFeatureTokens(JCas aJCas) {
@@ -292,11 +298,15 @@ public class FeatureTokenGenerator {
 	}
 	
 	public List<FeatureToken> getFeatureTokens(JCas aJCas) {
-		return tokens.get(aJCas.getDocumentText().hashCode());
+		synchronized (tokens) {
+			return tokens.get(aJCas);
+		}
 	}
 	
 	public List<FeatureToken> removeFeatureTokens(JCas aJCas) {
-		return tokens.remove(aJCas.getDocumentText().hashCode());
+		synchronized (tokens) {
+			return tokens.remove(aJCas);
+		}
 	}
 	
 	public List<FeatureToken> getFeatureTokens(JCas aJCas, Annotation container) {
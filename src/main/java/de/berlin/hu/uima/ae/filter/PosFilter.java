@@ -1,12 +1,12 @@
 package de.berlin.hu.uima.ae.filter;
 
 import de.berlin.hu.util.Constants;
-import opennlp.uima.Token;
 import org.apache.uima.analysis_component.JCasAnnotator_ImplBase;
 import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
 import org.apache.uima.cas.FSIndex;
 import org.apache.uima.jcas.JCas;
 import org.u_compare.shared.semantic.NamedEntity;
+import org.u_compare.shared.syntactic.Token;
 
 import java.util.*;
 
@@ -40,7 +40,7 @@ public class PosFilter  extends JCasAnnotator_ImplBase {
 
 			int begin = token.getBegin();
 			int end = token.getEnd();
-			String posTag = token.getPos();
+			String posTag = token.getLabel();
 
 			for (int i = begin; i < end; i++) {
 				posTags[i] = posTag;
@@ -0,0 +1,250 @@
+package de.berlin.hu.uima.ae.normalizer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An inverted index from the bigrams of strings (see {@link StringComparator#getBigrams(String)}) to the strings
+ * containing them, which finds all strings whose dice coefficient with a query reaches a threshold without comparing
+ * the query to every string.
+ *
+ * The strings are numbered by their number of bigrams, so every posting list is sorted by length as well and the
+ * strings that are too short or too long to reach the threshold are skipped with a binary search (length filter).
+ * The bigrams are numbered by ascending frequency, and only the postings of the rarest bigrams of a query, so many
+ * that every string reaching the threshold must share at least one of them, are used to collect candidates (prefix
+ * filter). The postings of the remaining bigrams only add to the overlap of these candidates.
+ */
+public class BigramIndex {
+	private final String[] strings;
+	/** the number of bigrams of every string, ascending */
+	private final int[] sizes;
+	private final Map<Integer, Integer> bigramIds;
+	private final int[][] postings;
+
+	/**
+	 * One string found by {@link BigramIndex#find(String, float)} together with its dice coefficient.
+	 */
+	public static class Match implements Comparable<Match> {
+		private final String string;
+		private final float score;
+
+		Match(String string, float score) {
+			this.string = string;
+			this.score = score;
+		}
+
+		public String getString() {
+			return string;
+		}
+
+		public float getScore() {
+			return score;
+		}
+
+		/**
+		 * Orders matches by descending score.
+		 */
+		public int compareTo(Match other) {
+			return Float.compare(other.score, score);
+		}
+
+		@Override
+		public String toString() {
+			return string + " (" + score + ")";
+		}
+	}
+
+	/**
+	 * @param strings the indexed strings, must not contain duplicates
+	 */
+	public BigramIndex(Collection<String> strings) {
+		// count the bigrams of every string and the strings containing every bigram
+		int count = strings.size();
+		String[] unsorted = strings.toArray(new String[count]);
+		int[] unsortedSizes = new int[count];
+		Map<Integer, int[]> frequencies = new HashMap<Integer, int[]>();
+		int maxSize = 0;
+		for (int i = 0; i < count; i++) {
+			int[] bigrams = StringComparator.getBigrams(unsorted[i]);
+			unsortedSizes[i] = bigrams.length;
+			maxSize = Math.max(maxSize, bigrams.length);
+			for (int bigram : bigrams) {
+				int[] frequency = frequencies.get(bigram);
+				if (frequency == null) {
+					frequency = new int[1];
+					frequencies.put(bigram, frequency);
+				}
+				frequency[0]++;
+			}
+		}
+
+		// number the strings by size (counting sort)
+		int[] offsets = new int[maxSize + 2];
+		for (int size : unsortedSizes) {
+			offsets[size + 1]++;
+		}
+		for (int i = 1; i < offsets.length; i++) {
+			offsets[i] += offsets[i - 1];
+		}
+		this.strings = new String[count];
+		this.sizes = new int[count];
+		for (int i = 0; i < count; i++) {
+			int id = offsets[unsortedSizes[i]]++;
+			this.strings[id] = unsorted[i];
+			this.sizes[id] = unsortedSizes[i];
+		}
+		unsorted = null;
+
+		// number the bigrams by frequency, rarest first
+		List<Map.Entry<Integer, int[]>> bigrams = new ArrayList<Map.Entry<Integer, int[]>>(frequencies.entrySet());
+		Collections.sort(bigrams, new Comparator<Map.Entry<Integer, int[]>>() {
+			public int compare(Map.Entry<Integer, int[]> o1, Map.Entry<Integer, int[]> o2) {
+				return o1.getValue()[0] - o2.getValue()[0];
+			}
+		});
+		bigramIds = new HashMap<Integer, Integer>(2 * bigrams.size());
+		postings = new int[bigrams.size()][];
+		for (int i = 0; i < bigrams.size(); i++) {
+			bigramIds.put(bigrams.get(i).getKey(), i);
+			postings[i] = new int[bigrams.get(i).getValue()[0]];
+		}
+		frequencies = null;
+		bigrams = null;
+
+		// fill the postings in the order of the string numbers, so that they are sorted
+		int[] fill = new int[postings.length];
+		for (int id = 0; id < count; id++) {
+			for (int bigram : StringComparator.getBigrams(this.strings[id])) {
+				int bigramId = bigramIds.get(bigram);
+				postings[bigramId][fill[bigramId]++] = id;
+			}
+		}
+	}
+
+	/**
+	 * @return the number of indexed strings
+	 */
+	public int size() {
+		return strings.length;
+	}
+
+	/**
+	 * Finds all indexed strings whose dice coefficient (on bigrams) with the query is at least the threshold.
+	 * @param query the query
+	 * @param threshold the minimum dice coefficient, greater than 0
+	 * @return the matches ordered by descending dice coefficient
+	 */
+	public List<Match> find(String query, float threshold) {
+		if (threshold <= 0 || threshold > 1) {
+			throw new IllegalArgumentException("threshold must be in (0, 1]: " + threshold);
+		}
+
+		int[] queryBigrams = StringComparator.getBigrams(query);
+		int querySize = queryBigrams.length;
+		// bigrams that do not occur in the index count towards the size of the query but never overlap
+		int[] queryIds = new int[querySize];
+		int known = 0;
+		for (int bigram : queryBigrams) {
+			Integer id = bigramIds.get(bigram);
+			if (id != null) {
+				queryIds[known++] = id;
+			}
+		}
+		queryIds = Arrays.copyOf(queryIds, known);
+		Arrays.sort(queryIds);
+
+		// 2 * overlap / (querySize + size) >= threshold limits the size of the strings and the overlap
+		int minSize = (int) Math.ceil(threshold * querySize / (2 - threshold) - 1e-6);
+		int maxSize = (int) Math.floor((2 - threshold) * querySize / threshold + 1e-6);
+		int minOverlap = Math.max(1, minSize);
+		int prefixLength = querySize - minOverlap + 1;
+		int from = lowerBound(sizes, 0, sizes.length, minSize);
+		int to = lowerBound(sizes, from, sizes.length, maxSize + 1);
+
+		// candidates are the strings in the size range sharing one of the rarest bigrams of the query
+		int[] candidates = new int[0];
+		int candidateCount = 0;
+		// (bigrams unknown to the index are the rarest and never shared, so fewer known bigrams are needed)
+		prefixLength -= querySize - known;
+		for (int i = 0; i < prefixLength; i++) {
+			int[] posting = postings[queryIds[i]];
+			int start = lowerBound(posting, 0, posting.length, from);
+			int end = lowerBound(posting, start, posting.length, to);
+			candidates = union(candidates, candidateCount, posting, start, end);
+			candidateCount = candidates.length;
+		}
+		if (candidateCount == 0) {
+			return new ArrayList<Match>(0);
+		}
+
+		// the overlap of every candidate with the query
+		int[] overlaps = new int[candidateCount];
+		for (int i = 0; i < known; i++) {
+			int[] posting = postings[queryIds[i]];
+			int p = lowerBound(posting, 0, posting.length, candidates[0]);
+			int c = 0;
+			while (p < posting.length && c < candidateCount) {
+				if (posting[p] < candidates[c]) {
+					p++;
+				} else if (posting[p] > candidates[c]) {
+					c++;
+				} else {
+					overlaps[c++]++;
+					p++;
+				}
+			}
+		}
+
+		List<Match> matches = new ArrayList<Match>();
+		for (int c = 0; c < candidateCount; c++) {
+			float score = (float) 2 * overlaps[c] / (querySize + sizes[candidates[c]]);
+			if (score >= threshold) {
+				matches.add(new Match(strings[candidates[c]], score));
+			}
+		}
+		Collections.sort(matches);
+		return matches;
+	}
+
+	/**
+	 * @return the first position in {@code array[from..to)} (sorted ascending) with a value not less than the key
+	 */
+	private static int lowerBound(int[] array, int from, int to, int key) {
+		while (from < to) {
+			int middle = (from + to) >>> 1;
+			if (array[middle] < key) {
+				from = middle + 1;
+			} else {
+				to = middle;
+			}
+		}
+		return from;
+	}
+
+	/**
+	 * @return the sorted union of the first {@code count} values of a sorted array and {@code values[from..to)}
+	 */
+	private static int[] union(int[] array, int count, int[] values, int from, int to) {
+		int[] result = new int[count + to - from];
+		int i = 0;
+		int j = from;
+		int length = 0;
+		while (i < count || j < to) {
+			if (j == to || i < count && array[i] < values[j]) {
+				result[length++] = array[i++];
+			} else if (i == count || values[j] < array[i]) {
+				result[length++] = values[j++];
+			} else {
+				result[length++] = array[i++];
+				j++;
+			}
+		}
+		return length < result.length ? Arrays.copyOf(result, length) : result;
+	}
+}
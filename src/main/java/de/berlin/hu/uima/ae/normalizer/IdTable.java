@@ -0,0 +1,280 @@
+package de.berlin.hu.uima.ae.normalizer;
+
+import de.berlin.hu.uima.ae.tagger.brics.BricsMatcher;
+import dk.brics.automaton.CompressedRunAutomaton;
+import dk.brics.automaton.MappedRunAutomaton;
+import dk.brics.automaton.NumberedAutomaton;
+import dk.brics.automaton.RunAutomaton;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A read-only map from chemical names to their ids that stores the names only once, as a numbered dictionary
+ * automaton (see {@link NumberedAutomaton}). The ids of a name are found by walking the automaton, which yields
+ * the index of the name's record, instead of hashing the name. The same automaton is used by the dictionary
+ * tagger if it is initialized from the normalizer, so the names are not held a second time as map keys.
+ * The records are kept off the heap as well (see {@link MappedIdRecords}), so every lookup returns a new array.
+ *
+ * Tables created by {@link #create(Map, File)} ignore case, i.e. any case variant of a name finds its ids
+ * without lower casing it first.
+ */
+public class IdTable extends AbstractMap<String, String[]> {
+	public static final String BINARY_SUFFIX = ".bin";
+	public static final int BINARY_MAGIC = 0x31424449; // "IDB1"
+	public static final int BINARY_VERSION = 1;
+	private static final int BINARY_HEADER_SIZE = 16;
+
+	private final RunAutomaton automaton;
+	private final NumberedAutomaton numbering;
+	private final MappedIdRecords records;
+
+	/**
+	 * @param automaton a numbered automaton accepting exactly the names of the ids
+	 * @param records the ids of the names by entry number
+	 */
+	public IdTable(RunAutomaton automaton, MappedIdRecords records) {
+		if (!(automaton instanceof NumberedAutomaton) || !((NumberedAutomaton) automaton).hasEntryNumbers()) {
+			throw new IllegalArgumentException("automaton does not number its entries");
+		}
+		if (((NumberedAutomaton) automaton).getNumberOfEntries() != records.size()) {
+			throw new IllegalArgumentException("automaton has " + ((NumberedAutomaton) automaton).getNumberOfEntries() + " entries, but there are " + records.size() + " records");
+		}
+		this.automaton = automaton;
+		this.numbering = (NumberedAutomaton) automaton;
+		this.records = records;
+	}
+
+	/**
+	 * Creates a case-insensitive table for the lower case ids read from an ids file. The automaton and the records
+	 * are cached next to the ids file (see {@link BricsMatcher#loadCachedAutomaton(java.util.Collection, File, boolean)}).
+	 */
+	public static IdTable create(Map<String, String[]> ids, File idsFile) throws IOException {
+		String hash = BricsMatcher.getCacheHash(ids.keySet(), idsFile, true);
+		RunAutomaton automaton = BricsMatcher.loadCachedAutomaton(ids.keySet(), idsFile, hash, true);
+		File recordsFile = BricsMatcher.getCachedFile(idsFile, hash, MappedIdRecords.SUFFIX);
+		if (recordsFile.exists()) {
+			MappedIdRecords records = MappedIdRecords.load(recordsFile);
+			if (records.size() == ((NumberedAutomaton) automaton).getNumberOfEntries()) {
+				System.out.println("Mapped cached id records " + recordsFile + ".");
+				return new IdTable(automaton, records);
+			}
+		}
+
+		String[][] records = getRecords((NumberedAutomaton) automaton, ids);
+		File tempFile = new File(recordsFile.getPath() + ".tmp");
+		try {
+			System.out.print("Writing id records to " + recordsFile + "...");
+			MappedIdRecords.store(records, tempFile);
+			if (recordsFile.exists() && !recordsFile.delete() || !tempFile.renameTo(recordsFile)) {
+				throw new IOException("could not rename " + tempFile + " to " + recordsFile);
+			}
+			System.out.println("Done.");
+			BricsMatcher.deleteStaleCachedFiles(idsFile, recordsFile, MappedIdRecords.SUFFIX);
+		} catch (IOException e) {
+			// the records have to be mapped from somewhere, so they go to a temporary file instead
+			System.out.println("Failed (" + e.getMessage() + "). Id records will be written from scratch next time.");
+			tempFile.delete();
+			recordsFile = File.createTempFile("ids", MappedIdRecords.SUFFIX);
+			recordsFile.deleteOnExit();
+			MappedIdRecords.store(records, recordsFile);
+		}
+		return new IdTable(automaton, MappedIdRecords.load(recordsFile));
+	}
+
+	/**
+	 * @return the file next to an ids file to which {@link #writeBinary(Map, File)} writes its binary version
+	 */
+	public static File getBinaryFile(File idsFile) {
+		return new File(idsFile.getPath().replaceFirst("\\.(zip|txt|tsv)$", "") + BINARY_SUFFIX);
+	}
+
+	/**
+	 * Writes a case-insensitive table for the lower case ids read from an ids file into a single binary file, which
+	 * {@link #load(File)} maps without reading the ids file again. The file consists of the magic number, the version
+	 * and the offset of the records (a long), followed by the numbered automaton of the names in the format of
+	 * {@link MappedRunAutomaton} and the records in the format of {@link MappedIdRecords}.
+	 */
+	public static void writeBinary(Map<String, String[]> ids, File binaryFile) throws IOException {
+		System.out.print("Creating brics automaton...");
+		CompressedRunAutomaton automaton = BricsMatcher.createCompressedAutomaton(ids.keySet(), true);
+		System.out.println("Done.");
+		File automatonFile = File.createTempFile("ids", BricsMatcher.MAPPED_AUTOMATON_SUFFIX);
+		File recordsFile = File.createTempFile("ids", MappedIdRecords.SUFFIX);
+		File tempFile = new File(binaryFile.getPath() + ".tmp");
+		try {
+			MappedRunAutomaton.store(automaton, automatonFile);
+			MappedIdRecords.store(getRecords(automaton, ids), recordsFile);
+			automaton = null;
+
+			System.out.print("Writing binary ids to " + binaryFile + "...");
+			FileOutputStream out = new FileOutputStream(tempFile);
+			try {
+				FileChannel channel = out.getChannel();
+				ByteBuffer header = ByteBuffer.allocate(BINARY_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+				header.putInt(BINARY_MAGIC).putInt(BINARY_VERSION).putLong(BINARY_HEADER_SIZE + automatonFile.length());
+				header.flip();
+				while (header.hasRemaining()) {
+					channel.write(header);
+				}
+				append(automatonFile, channel);
+				append(recordsFile, channel);
+			} finally {
+				out.close();
+			}
+			if (binaryFile.exists() && !binaryFile.delete() || !tempFile.renameTo(binaryFile)) {
+				throw new IOException("could not rename " + tempFile + " to " + binaryFile);
+			}
+			System.out.println("Done.");
+		} finally {
+			automatonFile.delete();
+			recordsFile.delete();
+			tempFile.delete();
+		}
+	}
+
+	private static void append(File file, FileChannel channel) throws IOException {
+		FileInputStream in = new FileInputStream(file);
+		try {
+			FileChannel source = in.getChannel();
+			long position = 0;
+			while (position < source.size()) {
+				position += source.transferTo(position, source.size() - position, channel);
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Maps a table written by {@link #writeBinary(Map, File)}.
+	 * @throws IOException if the file cannot be read or is not a binary ids file
+	 */
+	public static IdTable load(File binaryFile) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(BINARY_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		FileInputStream in = new FileInputStream(binaryFile);
+		try {
+			FileChannel channel = in.getChannel();
+			while (header.hasRemaining()) {
+				if (channel.read(header) == -1) {
+					throw new IOException(binaryFile + " is not a binary ids file");
+				}
+			}
+		} finally {
+			in.close();
+		}
+		if (header.getInt(0) != BINARY_MAGIC) {
+			throw new IOException(binaryFile + " is not a binary ids file");
+		}
+		if (header.getInt(4) != BINARY_VERSION) {
+			throw new IOException(binaryFile + " has unsupported version " + header.getInt(4));
+		}
+		return new IdTable(MappedRunAutomaton.load(binaryFile, BINARY_HEADER_SIZE), MappedIdRecords.load(binaryFile, header.getLong(8)));
+	}
+
+	/**
+	 * Converts an ids file into the binary format, written next to it (see {@link #getBinaryFile(File)}), from where
+	 * the normalizer picks it up instead of reading the ids file.
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 1) {
+			System.out.println("Usage: IdTable <path to ids file>");
+			return;
+		}
+		File idsFile = new File(args[0]);
+		System.out.print("Loading ids... ");
+		Map<String, String[]> ids = Normalizer.loadIdsFromFile(idsFile.getPath(), false);
+		System.out.println("Done.");
+		writeBinary(ids, getBinaryFile(idsFile));
+	}
+
+	/**
+	 * @return the ids of the names ordered by their entry numbers
+	 */
+	private static String[][] getRecords(NumberedAutomaton numbering, Map<String, String[]> ids) {
+		String[][] records = new String[numbering.getNumberOfEntries()][];
+		for (Map.Entry<String, String[]> entry : ids.entrySet()) {
+			int number = numbering.getEntryNumber(entry.getKey(), 0, entry.getKey().length());
+			if (number == -1) {
+				throw new IllegalArgumentException("automaton does not accept '" + entry.getKey() + "'");
+			}
+			records[number] = entry.getValue();
+		}
+		return records;
+	}
+
+	public RunAutomaton getAutomaton() {
+		return automaton;
+	}
+
+	/**
+	 * @return the ids of the name {@code text.subSequence(start, end)}, or null if it is not contained
+	 */
+	public String[] get(CharSequence text, int start, int end) {
+		int number = numbering.getEntryNumber(text, start, end);
+		return number != -1 ? records.get(number) : null;
+	}
+
+	@Override
+	public String[] get(Object key) {
+		if (!(key instanceof CharSequence)) {
+			return null;
+		}
+		CharSequence name = (CharSequence) key;
+		return get(name, 0, name.length());
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return get(key) != null;
+	}
+
+	@Override
+	public int size() {
+		return records.size();
+	}
+
+	@Override
+	public Set<Map.Entry<String, String[]>> entrySet() {
+		return new AbstractSet<Map.Entry<String, String[]>>() {
+			@Override
+			public Iterator<Map.Entry<String, String[]>> iterator() {
+				return new Iterator<Map.Entry<String, String[]>>() {
+					private int number = 0;
+
+					public boolean hasNext() {
+						return number < records.size();
+					}
+
+					public Map.Entry<String, String[]> next() {
+						if (!hasNext()) {
+							throw new NoSuchElementException();
+						}
+						String name = numbering.getEntry(number);
+						return new AbstractMap.SimpleImmutableEntry<String, String[]>(name, records.get(number++));
+					}
+
+					public void remove() {
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return records.size();
+			}
+		};
+	}
+}
@@ -0,0 +1,318 @@
+package de.berlin.hu.uima.ae.normalizer;
+
+import de.berlin.hu.util.Constants.ChemicalID;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * The id records of an {@link IdTable}, read in place from a memory-mapped file instead of being held on the heap.
+ * Record {@code i} holds the ids of the name with entry number {@code i}.
+ *
+ * Each {@link ChemicalID} is stored as a column: the distinct ids of the column are sorted and front coded in blocks
+ * of {@link #BLOCK_SIZE} (every id is stored as the length of the prefix it shares with the previous id of the block
+ * followed by the rest), and every record refers to its id by its index in the column. The file is a sequence of
+ * little-endian ints and bytes:
+ * magic, version, number of records, number of columns, the length of every record (one byte each, padded to a
+ * multiple of 4), and for every column the number of distinct ids, the number of blocks, the number of id bytes,
+ * the id index of every record, the offset of every block and the id bytes (padded to a multiple of 4).
+ */
+public class MappedIdRecords {
+	public static final String SUFFIX = ".ids";
+	public static final int MAGIC = 0x31534449; // "IDS1"
+	public static final int VERSION = 1;
+	public static final int BLOCK_SIZE = 16;
+	private static final int HEADER_SIZE = 16;
+	private static final int COLUMN_HEADER_SIZE = 12;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final int size;
+	private final ByteBuffer lengths;
+	private final Column[] columns;
+
+	private static class Column {
+		private ByteBuffer indices;
+		private ByteBuffer blockOffsets;
+		private ByteBuffer data;
+	}
+
+	private MappedIdRecords(int size, ByteBuffer lengths, Column[] columns) {
+		this.size = size;
+		this.lengths = lengths;
+		this.columns = columns;
+	}
+
+	/**
+	 * Maps records written by {@link #store(String[][], File)}.
+	 * @throws IOException if the file cannot be read or is not an id records file
+	 */
+	public static MappedIdRecords load(File file) throws IOException {
+		return load(file, 0);
+	}
+
+	/**
+	 * Maps records written by {@link #store(String[][], File)} that start at the given byte offset of a file.
+	 * @throws IOException if the file cannot be read or does not contain id records at the offset
+	 */
+	public static MappedIdRecords load(File file, long offset) throws IOException {
+		FileInputStream in = new FileInputStream(file);
+		try {
+			FileChannel channel = in.getChannel();
+			ByteBuffer header = read(channel, offset, HEADER_SIZE);
+			if (header.getInt(0) != MAGIC) {
+				throw new IOException(file + " is not an id records file");
+			}
+			if (header.getInt(4) != VERSION) {
+				throw new IOException(file + " has unsupported version " + header.getInt(4));
+			}
+			int size = header.getInt(8);
+			Column[] columns = new Column[header.getInt(12)];
+
+			long position = offset + HEADER_SIZE;
+			ByteBuffer lengths = map(channel, position, size);
+			position += pad(size);
+			for (int i = 0; i < columns.length; i++) {
+				ByteBuffer columnHeader = read(channel, position, COLUMN_HEADER_SIZE);
+				int blocks = columnHeader.getInt(4);
+				int dataLength = columnHeader.getInt(8);
+				position += COLUMN_HEADER_SIZE;
+
+				Column column = new Column();
+				column.indices = map(channel, position, 4L * size);
+				position += 4L * size;
+				column.blockOffsets = map(channel, position, 4L * blocks);
+				position += 4L * blocks;
+				column.data = map(channel, position, dataLength);
+				position += pad(dataLength);
+				columns[i] = column;
+			}
+			return new MappedIdRecords(size, lengths, columns);
+		} finally {
+			// the mappings stay valid after the channel is closed
+			in.close();
+		}
+	}
+
+	/**
+	 * Writes records in the layout that can be mapped by {@link #load(File)}. A record may be shorter than the
+	 * number of columns, but its ids must not be null.
+	 * @param records the records, null records are stored as empty records
+	 * @param file the output file
+	 */
+	public static void store(String[][] records, File file) throws IOException {
+		int columnCount = 0;
+		byte[] lengths = new byte[pad(records.length)];
+		for (int i = 0; i < records.length; i++) {
+			int length = records[i] != null ? records[i].length : 0;
+			if (length > Byte.MAX_VALUE) {
+				throw new IOException("record " + i + " has more than " + Byte.MAX_VALUE + " ids");
+			}
+			lengths[i] = (byte) length;
+			columnCount = Math.max(columnCount, length);
+		}
+
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			Writer writer = new Writer(out.getChannel());
+			writer.putInt(MAGIC);
+			writer.putInt(VERSION);
+			writer.putInt(records.length);
+			writer.putInt(columnCount);
+			writer.put(lengths, lengths.length);
+
+			for (int column = 0; column < columnCount; column++) {
+				// the distinct ids of the column in sorted order
+				String[] values = new String[records.length];
+				int count = 0;
+				for (String[] record : records) {
+					if (record != null && column < record.length) {
+						values[count++] = record[column];
+					}
+				}
+				Arrays.sort(values, 0, count);
+				int distinct = 0;
+				for (int i = 0; i < count; i++) {
+					if (distinct == 0 || !values[i].equals(values[distinct - 1])) {
+						values[distinct++] = values[i];
+					}
+				}
+				values = Arrays.copyOf(values, distinct);
+
+				// front code the ids in blocks
+				int blocks = (distinct + BLOCK_SIZE - 1) / BLOCK_SIZE;
+				int[] blockOffsets = new int[blocks];
+				ByteArray data = new ByteArray();
+				byte[] previous = null;
+				for (int i = 0; i < distinct; i++) {
+					byte[] value = values[i].getBytes(UTF8);
+					int prefix = 0;
+					if (i % BLOCK_SIZE == 0) {
+						blockOffsets[i / BLOCK_SIZE] = data.length;
+					} else {
+						while (prefix < previous.length && prefix < value.length && previous[prefix] == value[prefix]) {
+							prefix++;
+						}
+					}
+					data.putVarInt(prefix);
+					data.putVarInt(value.length - prefix);
+					data.put(value, prefix, value.length - prefix);
+					previous = value;
+				}
+
+				writer.putInt(distinct);
+				writer.putInt(blocks);
+				writer.putInt(data.length);
+				for (String[] record : records) {
+					writer.putInt(record != null && column < record.length ? Arrays.binarySearch(values, record[column]) : -1);
+				}
+				for (int offset : blockOffsets) {
+					writer.putInt(offset);
+				}
+				writer.put(data.bytes, pad(data.length));
+			}
+			writer.flush();
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * @return the number of records
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return a new array with the ids of a record, as many as were stored for it
+	 */
+	public String[] get(int record) {
+		String[] ids = new String[lengths.get(record)];
+		for (int column = 0; column < ids.length; column++) {
+			ids[column] = getId(columns[column], columns[column].indices.getInt(4 * record));
+		}
+		return ids;
+	}
+
+	private static String getId(Column column, int index) {
+		int position = column.blockOffsets.getInt(4 * (index / BLOCK_SIZE));
+		byte[] value = new byte[64];
+		int length = 0;
+		for (int i = 0; i <= index % BLOCK_SIZE; i++) {
+			int prefix = 0;
+			int shift = 0;
+			byte b;
+			do {
+				b = column.data.get(position++);
+				prefix |= (b & 0x7f) << shift;
+				shift += 7;
+			} while (b < 0);
+			int suffix = 0;
+			shift = 0;
+			do {
+				b = column.data.get(position++);
+				suffix |= (b & 0x7f) << shift;
+				shift += 7;
+			} while (b < 0);
+
+			length = prefix + suffix;
+			if (length > value.length) {
+				value = Arrays.copyOf(value, Math.max(length, 2 * value.length));
+			}
+			for (int j = prefix; j < length; j++) {
+				value[j] = column.data.get(position++);
+			}
+		}
+		return new String(value, 0, length, UTF8);
+	}
+
+	private static int pad(int length) {
+		return (length + 3) & ~3;
+	}
+
+	private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) == -1) {
+				throw new IOException("unexpected end of id records file");
+			}
+		}
+		return buffer;
+	}
+
+	private static ByteBuffer map(FileChannel channel, long position, long length) throws IOException {
+		if (length > Integer.MAX_VALUE) {
+			throw new IOException("id records section of " + length + " bytes is too large to be mapped");
+		}
+		return channel.map(FileChannel.MapMode.READ_ONLY, position, length).order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	private static class ByteArray {
+		private byte[] bytes = new byte[1 << 10];
+		private int length = 0;
+
+		private void ensureCapacity(int capacity) {
+			if (capacity > bytes.length) {
+				bytes = Arrays.copyOf(bytes, Math.max(capacity, 2 * bytes.length));
+			}
+		}
+
+		void putVarInt(int value) {
+			ensureCapacity(length + 5);
+			while ((value & ~0x7f) != 0) {
+				bytes[length++] = (byte) ((value & 0x7f) | 0x80);
+				value >>>= 7;
+			}
+			bytes[length++] = (byte) value;
+		}
+
+		void put(byte[] values, int offset, int count) {
+			ensureCapacity(length + count);
+			System.arraycopy(values, offset, bytes, length, count);
+			length += count;
+		}
+	}
+
+	private static class Writer {
+		private final FileChannel channel;
+		private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+
+		Writer(FileChannel channel) {
+			this.channel = channel;
+		}
+
+		void putInt(int value) throws IOException {
+			if (buffer.remaining() < 4) {
+				flush();
+			}
+			buffer.putInt(value);
+		}
+
+		/**
+		 * Writes the first {@code count} bytes of an array, which may be longer than the array (padding with zeros).
+		 */
+		void put(byte[] values, int count) throws IOException {
+			for (int i = 0; i < count; i++) {
+				if (!buffer.hasRemaining()) {
+					flush();
+				}
+				buffer.put(i < values.length ? values[i] : 0);
+			}
+		}
+
+		void flush() throws IOException {
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			buffer.clear();
+		}
+	}
+}
@@ -14,14 +14,17 @@ package de.berlin.hu.uima.ae.normalizer;
 
 import de.berlin.hu.chemspot.ChemSpotConfiguration;
 import de.berlin.hu.chemspot.ChemSpotConfiguration.Component;
+import de.berlin.hu.uima.ae.tagger.brics.BricsMatcher;
 import de.berlin.hu.util.Constants;
 import de.berlin.hu.util.Constants.ChemicalID;
+import de.berlin.hu.util.LruCache;
 //import groovyNormalizerBeans.NameNormalizer;
 
 import org.apache.uima.UimaContext;
 import org.apache.uima.analysis_component.JCasAnnotator_ImplBase;
 import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
 import org.apache.uima.jcas.JCas;
+import org.apache.uima.jcas.cas.StringArray;
 import org.apache.uima.resource.ResourceInitializationException;
 import org.u_compare.shared.semantic.NamedEntity;
 import org.uimafit.util.JCasUtil;
@@ -30,6 +33,7 @@ import uk.ac.cam.ch.wwmm.opsin.NameToStructureException;
 
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.File;
 import java.io.FileWriter;
 import java.io.FileInputStream;
 import java.io.InputStream;
@@ -44,6 +48,7 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
@@ -55,15 +60,32 @@ import java.util.zip.ZipFile;
 public class Normalizer extends JCasAnnotator_ImplBase {
     private static Map<String,String[]> ids = new HashMap<String,String[]>();
     private static Map<String,String[]> normalizedIds = new HashMap<String,String[]>();
+    //index of the names for fuzzy matching, only built if enabled
+    private static BigramIndex index = null;
+    private static float fuzzyThreshold = 0.7f;
     private NameToInchi nameToInChi;
+    //OPSIN results by name, names without a result are cached as NO_INCHI
+    private static LruCache<String, String> inchiCache = null;
+    private static final String NO_INCHI = "";
+    //final ids by name, shared by all normalizers and documents
+    private static LruCache<String, String[]> resultCache = null;
+    private static final String[] NOT_NORMALIZED = new String[0];
     private static final String PATH_TO_IDS = "PathToIDs";
+    //the ids file the ids were loaded from, with its modification time
+    private static String loadedIdsFile = null;
+    //the names for which the ids arrays of the current document were created, by address of the array, so that
+    //entities that kept their text since an earlier pass (e.g. before the feature generator) are not normalized again
+    private final Map<Integer, String> normalizedNames = new HashMap<Integer, String>();
+    private JCas lastJCas = null;
+    private String lastDocumentText = null;
     //private NameNormalizer nameNormalizer = null;
     
     private Map<String, String> fdaIds = null;
     private Map<String, String> fdaDates = null;
     
     private void loadFDAData(String pathToFile) throws IOException {
-    	fdaIds = new HashMap<String, String>();
+    	//drug names are looked up regardless of case
+    	fdaIds = new TreeMap<String, String>(String.CASE_INSENSITIVE_ORDER);
     	fdaDates = new HashMap<String, String>();
     	
     	BufferedReader reader = new BufferedReader(new InputStreamReader(this.getClass().getResourceAsStream(pathToFile)));
@@ -165,14 +187,13 @@ public class Normalizer extends JCasAnnotator_ImplBase {
 	public static void readIdsFileTo(InputStream in, Map<String, String[]> result) throws IOException {
     	Map<String, List<String>> normalizedChems = new HashMap<String, List<String>>();
     	
-    	BufferedReader reader = new BufferedReader(new InputStreamReader(in));
+    	BufferedReader reader = new BufferedReader(new InputStreamReader(in), 1 << 16);
         String line = reader.readLine();
         while (line != null) {
             int splitAt = line.indexOf('\t');
-            String chem = line.substring(0, splitAt).toLowerCase();
-            String identifiers = line.substring(splitAt+1);
+            String chem = BricsMatcher.foldCase(line.substring(0, splitAt));
             
-            result.put(chem, identifiers.split("\t"));
+            result.put(chem, splitIds(line, splitAt + 1));
             
             /*nameNormalizer.setName(chem);
             String normalizedChem = nameNormalizer.getNormName();
@@ -193,7 +214,51 @@ public class Normalizer extends JCasAnnotator_ImplBase {
         }
     }
     
+    /**
+     * Splits the tab separated ids of a line starting at {@code from} like {@code line.substring(from).split("\t")},
+     * i.e. without trailing empty ids, but without a regular expression and an intermediate substring.
+     */
+    static String[] splitIds(String line, int from) {
+    	int count = 1;
+    	int last = line.length();
+    	for (int i = from; i < line.length(); i++) {
+    		if (line.charAt(i) == '\t') {
+    			count++;
+    		}
+    	}
+    	if (count == 1) {
+    		return new String[] {line.substring(from)};
+    	}
+    	// drop trailing empty ids
+    	while (last > from && line.charAt(last - 1) == '\t') {
+    		last--;
+    		count--;
+    	}
+    	if (last == from) {
+    		return new String[0];
+    	}
+    	
+    	String[] result = new String[count];
+    	int start = from;
+    	for (int i = 0; i < count; i++) {
+    		int end = line.indexOf('\t', start);
+    		if (end == -1 || end > last) {
+    			end = last;
+    		}
+    		result[i] = line.substring(start, end);
+    		start = end + 1;
+    	}
+    	return result;
+    }
+    
     public static Map<String, String[]> loadIdsFromFile(String file) throws IOException {
+    	return loadIdsFromFile(file, true);
+    }
+    
+    /**
+     * @param includeNormalized whether the ChemHits normalized ids of a zip file should be read as well
+     */
+    public static Map<String, String[]> loadIdsFromFile(String file, boolean includeNormalized) throws IOException {
     	Map<String, String[]> ids = new HashMap<String, String[]>();
     	
         if (file.endsWith(".zip")) {
@@ -202,6 +267,9 @@ public class Normalizer extends JCasAnnotator_ImplBase {
             
             while (entries.hasMoreElements()) {
                 ZipEntry entry = entries.nextElement();
+                if (!includeNormalized && entry.getName().contains("normalized")) {
+                	continue;
+                }
                 
                 InputStream in = zipFile.getInputStream(entry);
 				readIdsFileTo(in, ids);
@@ -242,23 +310,24 @@ public class Normalizer extends JCasAnnotator_ImplBase {
     	return ids;
     }
     
-    @Override
-    public void initialize(UimaContext aContext) throws ResourceInitializationException {
-        super.initialize(aContext);
-        System.out.println("Initializing normalizer...");
-        
-        try {
-			loadFDAData("/resources/fda/approved_drugs.tsv");
-		} catch (IOException e) {
-			e.printStackTrace();
-		}
-        
-        /*if (ChemSpotConfiguration.useComponent(Component.CHEMHITS))  {
-        	System.out.println("  Initializing ChemHits...");
-        	nameNormalizer = new NameNormalizer();
-        }*/
+    /**
+     * Loads the ids of a file and the structures built from them, unless they were loaded by a previous normalizer.
+     * All normalizers share the ids, so only the first of several normalizers working in parallel loads them.
+     */
+    private static synchronized void loadIds(String idsFile) throws ResourceInitializationException {
+        String loadedFile = idsFile + "@" + new File(idsFile).lastModified();
+        if (loadedFile.equals(loadedIdsFile)) {
+        	return;
+        }
         
-        String idsFile = aContext.getConfigParameterValue(PATH_TO_IDS).toString();
+        Map<String, String[]> loadedIds = new HashMap<String, String[]>();
+        //a binary version of the ids (see IdTable.main) is mapped instead of reading the ids, unless it is outdated
+        File binaryFile = IdTable.getBinaryFile(new File(idsFile));
+        boolean binary = binaryFile.isFile() && (!idsFile.endsWith(".zip") || ChemSpotConfiguration.useComponent(Component.NORMALIZER));
+        if (binary && binaryFile.lastModified() < new File(idsFile).lastModified()) {
+        	System.out.println("  Ignoring outdated binary ids " + binaryFile);
+        	binary = false;
+        }
         try {
         	if (idsFile.endsWith(".zip")) {
     	        ZipFile zipFile = new ZipFile(idsFile);
@@ -274,21 +343,67 @@ public class Normalizer extends JCasAnnotator_ImplBase {
 							readIdsFileTo(in, normalizedIds);
 	                    	System.out.println("Done.");
                     	}
-                    } else if (ChemSpotConfiguration.useComponent(Component.NORMALIZER)) {
+                    } else if (!binary && ChemSpotConfiguration.useComponent(Component.NORMALIZER)) {
                     	System.out.print("  Loading ids... ");
-						readIdsFileTo(in, ids);
+						readIdsFileTo(in, loadedIds);
                     	System.out.println("Done.");
                     }
                     
                     in.close();
                 }
-            } else {
-            	ids = loadIdsFromFile(idsFile);
+            } else if (!binary) {
+            	loadedIds = loadIdsFromFile(idsFile);
             }
+        	
+        	if (binary) {
+        		System.out.print("  Mapping binary ids " + binaryFile + "... ");
+        		ids = IdTable.load(binaryFile);
+        		System.out.println("Done.");
+        	} else {
+        		//the names are kept only once, in the automaton of the table
+        		ids = loadedIds.isEmpty() ? loadedIds : IdTable.create(loadedIds, new File(idsFile));
+        	}
 		} catch (IOException e) {
 			throw new ResourceInitializationException(e);
 		}
         
+        //results for other ids are outdated
+        int cacheSize = ChemSpotConfiguration.getNormalizerCacheSize();
+        if (resultCache == null && cacheSize > 0) {
+        	resultCache = new LruCache<String, String[]>(cacheSize);
+        } else if (resultCache != null) {
+        	resultCache.clear();
+        }
+        
+        if (ChemSpotConfiguration.isNormalizerFuzzy() && !ids.isEmpty()) {
+        	System.out.print("  Indexing ids for fuzzy matching... ");
+        	index = new BigramIndex(ids.keySet());
+        	fuzzyThreshold = ChemSpotConfiguration.getNormalizerFuzzyThreshold();
+        	System.out.println("Done.");
+        } else {
+        	index = null;
+        }
+        
+        loadedIdsFile = loadedFile;
+    }
+    
+    @Override
+    public void initialize(UimaContext aContext) throws ResourceInitializationException {
+        super.initialize(aContext);
+        System.out.println("Initializing normalizer...");
+        
+        try {
+			loadFDAData("/resources/fda/approved_drugs.tsv");
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+        
+        /*if (ChemSpotConfiguration.useComponent(Component.CHEMHITS))  {
+        	System.out.println("  Initializing ChemHits...");
+        	nameNormalizer = new NameNormalizer();
+        }*/
+        
+        loadIds(aContext.getConfigParameterValue(PATH_TO_IDS).toString());
         
         if (ChemSpotConfiguration.useComponent(Component.OPSIN)) {
 	        try {
@@ -297,6 +412,11 @@ public class Normalizer extends JCasAnnotator_ImplBase {
 	        } catch (NameToStructureException e) {
 	            e.printStackTrace();
 	        }
+	        synchronized (Normalizer.class) {
+		        if (inchiCache == null) {
+		        	inchiCache = new LruCache<String, String>(ChemSpotConfiguration.getOpsinCacheSize());
+		        }
+	        }
         }
     	
         
@@ -307,57 +427,161 @@ public class Normalizer extends JCasAnnotator_ImplBase {
 		}*/
     }
     
+    /**
+     * @return the InChI that OPSIN generates for a name, or null if OPSIN cannot parse the name
+     */
+    private String getInChI(String name) {
+    	String inchi = inchiCache.get(name);
+    	if (inchi == null) {
+    		inchi = nameToInChi.parseToStdInchi(name);
+    		inchiCache.put(name, inchi != null ? inchi : NO_INCHI);
+    	}
+    	return inchi != null && !inchi.isEmpty() ? inchi : null;
+    }
+    
+    /**
+     * @return the cache of the OPSIN results, null if OPSIN is not used
+     */
+    public static LruCache<String, String> getInChICache() {
+    	return inchiCache;
+    }
+    
+    /**
+     * @return the cache of the ids by name, null if disabled
+     */
+    public static LruCache<String, String[]> getResultCache() {
+    	return resultCache;
+    }
+    
+    /**
+     * @return the ids of the name most similar to the chemical with a dice coefficient of at least the fuzzy threshold,
+     * otherwise of the longest name with more than three characters contained in the chemical, or null
+     */
     private String[] getBestMatch(String chemical, Map<String, String[]> ids) {
-    	String[] result = null;
-    	
-    	List<String> substringMatches = new ArrayList<String>();
-    	
-    	String bestMatch = null;
-    	float bestScore = 0;
+    	List<BigramIndex.Match> matches = index.find(chemical, fuzzyThreshold);
+    	if (!matches.isEmpty()) {
+    		return ids.get(matches.get(0).getString());
+    	}
     	
-    	int i = 0;
-    	for (String key : ids.keySet()) {
-    		if (Math.abs(chemical.length() - key.length()) < 3){
-    			
+    	for (int length = chemical.length() - 1; length > 3; length--) {
+    		for (int start = 0; start + length <= chemical.length(); start++) {
+    			String[] result = ids.get(chemical.substring(start, start + length));
+    			if (result != null) {
+    				return result;
+    			}
     		}
+    	}
+    	
+    	return null;
+    }
+    
+    /**
+     * @return the ids of a name from the dictionary, OPSIN and the FDA data, an empty array if there are none.
+     * The returned array must not be changed, as it is shared by all entities with this name.
+     */
+    private String[] normalize(String name) {
+        //the id table ignores case, so names only have to be folded like the names of the ids for a plain map
+        String[] normalized = ids instanceof IdTable ? ids.get(name) : ids.get(BricsMatcher.foldCase(name));
+        
+        /*if (nameNormalizer != null) {
+        	nameNormalizer.setName(name);
+        	String chemHitsnormalizedString = nameNormalizer.getNormName();
+        	
+        	if (name.replace("-", " ").equalsIgnoreCase(chemHitsnormalizedString.replace("-", " "))) {
+        		chemHitsEqual++;
+        	} else {
+        		chemHitsDifferent++;
+        	}
+        		
+    		//System.out.println(name + " - > " + chemHitsnormalizedString);
     		
-    		float score = StringComparator.diceCoefficient(StringComparator.getNGrams(chemical, 2), StringComparator.getNGrams(key, 2));
-			
-			if (score > bestScore) {
-				bestMatch = key;
-				bestScore = score;
-			}
+    		String[] chemhitsNormalized = normalizedIds.get(chemHitsnormalizedString);
     		
-    		if (chemical.contains(key)) {
-    			substringMatches.add(key);
+    		if (normalized != null && (normalized[Constants.ChemicalID.CHEB.ordinal()] == null || normalized[Constants.ChemicalID.CHEB.ordinal()].isEmpty())) {
+    			normalized = null;
+    		}
+    		if (chemhitsNormalized != null && (chemhitsNormalized[Constants.ChemicalID.CHEB.ordinal()] == null || chemhitsNormalized[Constants.ChemicalID.CHEB.ordinal()].isEmpty())) {
+    			chemhitsNormalized = null;
     		}
     		
-    		if (++i % 10000 == 0) {
-    			System.out.print(".");
+    		if (normalized == null && chemhitsNormalized == null) {
+    			chemHitsIdNotFound++;
+    		} else if (normalized == null && chemhitsNormalized != null) {
+    			chemHitsIdFoundExclusively++;
+    		} else if (normalized != null && chemhitsNormalized == null) {
+    			chemHitsIdNotFoundExclusively++;
+    		} else if (normalized != null && chemhitsNormalized != null)  {
+    			chemHitsIdFoundBoth++;
     		}
-    	}
-    	
-    	if (bestScore > 0.7) {
-    		result = ids.get(bestMatch);
-    	} else if (!substringMatches.isEmpty()) {
-    		Comparator<String> comparator = new Comparator<String>() {
-
-    			public int compare(String o1, String o2) {
-    				return o1.length() - o2.length();
+    		
+    		if (normalized != null && chemhitsNormalized != null) {
+    			if (chemhitsNormalized.length != normalized.length) {
+    				chemHitsdifferentIdFound++;
+    			} else {
+    				for (int i = 0; i < chemhitsNormalized.length; i++) {
+    					if (
+    							(normalized[i] != null && !normalized[i].equals(chemhitsNormalized[i])) 
+    							|| (chemhitsNormalized[i] != null && !chemhitsNormalized[i].equals(normalized[i])) 
+    							) {
+    						chemHitsdifferentIdFound++;
+    						break;
+    					}
+    				}
     			}
-        		
-        	};
-        	
-        	Collections.sort(substringMatches, Collections.reverseOrder(comparator));
+    		}
+    		
+    		if (normalized == null && chemhitsNormalized != null) {
+            	normalized = chemhitsNormalized;
+            	System.out.println("replacing id with the one found by ChemHits: " + name + " -> " + chemHitsnormalizedString);
+            }
+    	}*/
+        
+        if (normalized == null && index != null) {
+        	normalized = getBestMatch(BricsMatcher.foldCase(name), ids);
+        }
+        
+        //OPSIN is only asked for names without an InChI in the dictionary
+        boolean hasInChI = normalized != null && normalized.length > ChemicalID.INCH.ordinal()
+        		&& normalized[ChemicalID.INCH.ordinal()] != null && !normalized[ChemicalID.INCH.ordinal()].isEmpty();
+        String inchi = nameToInChi != null && !hasInChI ? getInChI(name) : null;
+        
+        //if entity is contained in dictionary
+        if (normalized != null) {
+            if (normalized.length > ChemicalID.INCH.ordinal()) {
+                if (normalized[ChemicalID.INCH.ordinal()].isEmpty() && inchi != null) {
+                	//the ids of a plain map must not be changed
+                	normalized = normalized.clone();
+                	normalized[ChemicalID.INCH.ordinal()] = inchi;
+                }
+            } else {
+                if (inchi != null) {
+                    String[] normalizedTemp = Arrays.copyOf(normalized, ChemicalID.INCH.ordinal() + 1);
+                    normalizedTemp[ChemicalID.INCH.ordinal()] = inchi;
+                    normalized = normalizedTemp;
+                }
+            }
+        } else {
+            if (inchi != null) {
+                String[] normalizedTemp = new String[ChemicalID.INCH.ordinal() + 1];
+                normalizedTemp[ChemicalID.INCH.ordinal()] = inchi;
+                normalized = normalizedTemp;
+            }
+        }
+        
+        String fdaId = fdaIds != null ? fdaIds.get(name) : null;
+        if (fdaId != null) {
+        	fda++;
+        	if (normalized == null) normalized = new String[Constants.ChemicalID.values().length];
         	
-        	String bestSubstringMatch = substringMatches.get(0);
+        	normalized = Arrays.copyOf(normalized, Constants.ChemicalID.values().length);
+        	normalized[ChemicalID.FDA.ordinal()] = fdaId;
         	
-        	if (bestSubstringMatch.length() > 3) {
-        		result = ids.get(bestMatch);
+        	if (fdaDates.containsKey(fdaId)) {
+        		normalized[ChemicalID.FDA_DATE.ordinal()] = fdaDates.get(fdaId);
         	}
-    	}
-    	
-    	return result;
+        }
+        
+        return normalized != null ? normalized : NOT_NORMALIZED;
     }
     
     private static int chemHitsDifferent = 0;
@@ -379,11 +603,15 @@ public class Normalizer extends JCasAnnotator_ImplBase {
     @Override
     public void process(JCas jCas) throws AnalysisEngineProcessException {
         Iterator<NamedEntity> entities = JCasUtil.iterator(jCas, NamedEntity.class);
+        if (jCas != lastJCas || jCas.getDocumentText() != lastDocumentText) {
+        	normalizedNames.clear();
+        	lastJCas = jCas;
+        	lastDocumentText = jCas.getDocumentText();
+        }
         
         List<NamedEntity> entiti = new ArrayList<NamedEntity>();
         while (entities.hasNext()) {
             NamedEntity entity = entities.next();
-            String inchi = nameToInChi != null ? nameToInChi.parseToStdInchi(entity.getCoveredText()) : null;
             
             if (entity.getCoveredText().matches("[a-zA-Z]+")) {
             	one++;
@@ -396,109 +624,39 @@ public class Normalizer extends JCasAnnotator_ImplBase {
             }
             
             if (!Constants.GOLDSTANDARD.equals(entity.getSource())) {
-                nE++;
-                String[] normalized = ids.get(entity.getCoveredText().toLowerCase());
-                
-                /*if (nameNormalizer != null) {
-                	nameNormalizer.setName(entity.getCoveredText());
-                	String chemHitsnormalizedString = nameNormalizer.getNormName();
-                	
-                	if (entity.getCoveredText().replace("-", " ").equalsIgnoreCase(chemHitsnormalizedString.replace("-", " "))) {
-                		chemHitsEqual++;
-                	} else {
-                		chemHitsDifferent++;
-                	}
-                		
-            		//System.out.println(entity.getCoveredText() + " - > " + chemHitsnormalizedString);
-            		
-            		String[] chemhitsNormalized = normalizedIds.get(chemHitsnormalizedString);
-            		
-            		if (normalized != null && (normalized[Constants.ChemicalID.CHEB.ordinal()] == null || normalized[Constants.ChemicalID.CHEB.ordinal()].isEmpty())) {
-            			normalized = null;
-            		}
-            		if (chemhitsNormalized != null && (chemhitsNormalized[Constants.ChemicalID.CHEB.ordinal()] == null || chemhitsNormalized[Constants.ChemicalID.CHEB.ordinal()].isEmpty())) {
-            			chemhitsNormalized = null;
-            		}
-            		
-            		if (normalized == null && chemhitsNormalized == null) {
-            			chemHitsIdNotFound++;
-            		} else if (normalized == null && chemhitsNormalized != null) {
-            			chemHitsIdFoundExclusively++;
-            		} else if (normalized != null && chemhitsNormalized == null) {
-            			chemHitsIdNotFoundExclusively++;
-            		} else if (normalized != null && chemhitsNormalized != null)  {
-            			chemHitsIdFoundBoth++;
-            		}
-            		
-            		if (normalized != null && chemhitsNormalized != null) {
-            			if (chemhitsNormalized.length != normalized.length) {
-            				chemHitsdifferentIdFound++;
-            			} else {
-            				for (int i = 0; i < chemhitsNormalized.length; i++) {
-            					if (
-            							(normalized[i] != null && !normalized[i].equals(chemhitsNormalized[i])) 
-            							|| (chemhitsNormalized[i] != null && !chemhitsNormalized[i].equals(normalized[i])) 
-            							) {
-            						chemHitsdifferentIdFound++;
-            						break;
-            					}
-            				}
-            			}
-            		}
-            		
-            		if (normalized == null && chemhitsNormalized != null) {
-                    	normalized = chemhitsNormalized;
-                    	System.out.println("replacing id with the one found by ChemHits: " + entity.getCoveredText() + " -> " + chemHitsnormalizedString);
-                    }
-            	}*/
-                
-                /*if (normalized == null) {
-                	normalized = getBestMatch(entity.getCoveredText().toLowerCase(), ids);
-                }*/
-                
-                //if entity is contained in dictionary
-                if (normalized != null) {
-                    //FIXME: use a UIMA field instead of a String here
-                    if (normalized.length > ChemicalID.INCH.ordinal()) {
-                        if (normalized[ChemicalID.INCH.ordinal()].isEmpty() && inchi != null) normalized[ChemicalID.INCH.ordinal()] = inchi;
-                    } else {
-                        if (inchi != null) {
-                            String[] normalizedTemp = Arrays.copyOf(normalized, ChemicalID.INCH.ordinal() + 1);
-                            normalizedTemp[ChemicalID.INCH.ordinal()] = inchi;
-                            normalized = normalizedTemp;
-                        }
-                    }
-                    nN++;
-                } else {
-                    if (inchi != null) {
-                        String[] normalizedTemp = new String[ChemicalID.INCH.ordinal() + 1];
-                        normalizedTemp[ChemicalID.INCH.ordinal()] = inchi;
-                        normalized = normalizedTemp;
-                        nN++;
-                    }
+                String name = entity.getCoveredText();
+                //clones and copies of an entity share its ids array, they only have to be normalized if their text changed
+                StringArray previousIds = entity.getIds();
+                if (previousIds != null && name.equals(normalizedNames.get(previousIds.getAddress()))) {
+                	continue;
                 }
                 
-                if (fdaIds != null && fdaIds.containsKey(entity.getCoveredText().toLowerCase())) {
-                	fda++;
-                	//System.out.println(entity.getCoveredText().toLowerCase());
-                	if (normalized == null) normalized = new String[Constants.ChemicalID.values().length];
-                	
-                	normalized = Arrays.copyOf(normalized, Constants.ChemicalID.values().length);
-                	normalized[ChemicalID.FDA.ordinal()] = fdaIds.get(entity.getCoveredText().toLowerCase());
-                	
-                	if (fdaDates.containsKey(fdaIds.get(entity.getCoveredText().toLowerCase()))) {
-                		normalized[ChemicalID.FDA_DATE.ordinal()] = fdaDates.get(fdaIds.get(entity.getCoveredText().toLowerCase()));
+                nE++;
+                //the results are shared by all documents, names seen recently are not normalized again
+                String[] normalized = resultCache != null ? resultCache.get(name) : null;
+                if (normalized == null) {
+                	normalized = normalize(name);
+                	if (resultCache != null) {
+                		resultCache.put(name, normalized);
                 	}
                 }
+                if (normalized.length > 0) {
+                	nN++;
+                }
                 
-                String normalizedString = normalized != null ? Arrays.toString(normalized) : null;
+                //the ids are stored as an array, an empty one if the entity could not be normalized
+                StringArray idArray = new StringArray(jCas, normalized.length);
+                idArray.copyFromArray(normalized, 0, 0, normalized.length);
+                normalizedNames.put(idArray.getAddress(), name);
                 if (Constants.GOLDSTANDARD.equals(entity.getSource())) {
 	                NamedEntity e = (NamedEntity)entity.clone();
-	                e.setId(normalizedString);
+	                e.setId(null);
+	                e.setIds(idArray);
 	                e.setSource("Test");
 	                entiti.add(e);
                 } else {
-                	entity.setId(normalizedString);
+                	entity.setId(null);
+                	entity.setIds(idArray);
                 }
             }
         }
@@ -515,6 +673,17 @@ public class Normalizer extends JCasAnnotator_ImplBase {
         //System.out.printf("not normalized: %d, all: %d, one word: %d, two words: %d, two words all: %d%n", nN, nE, one, two, twoAll);
     }
     
+    @Override
+    public void collectionProcessComplete() throws AnalysisEngineProcessException {
+    	super.collectionProcessComplete();
+    	if (resultCache != null) {
+    		System.out.println("Normalization cache: " + resultCache);
+    	}
+    	if (inchiCache != null) {
+    		System.out.println("OPSIN cache: " + inchiCache);
+    	}
+    }
+    
     private void printChemHitsStatistic() {
     	System.out.printf("%nChemHits statistics:%n  identifed %d new terms after normalization (of %d / %.2f %%)%n", chemHitsDifferent, chemHitsDifferent + chemHitsEqual, chemHitsDifferent + chemHitsEqual > 0 ? (float)chemHitsDifferent / (float)(chemHitsDifferent + chemHitsEqual) * 100 : 0);
     	System.out.printf("  found only by ChemHits: %d, only by ChemSpot: %d, by neither: %d, by both: %d (%d of those differently / %.2f %%)%n%n", chemHitsIdFoundExclusively, chemHitsIdNotFoundExclusively, chemHitsIdNotFound, chemHitsIdFoundBoth , chemHitsdifferentIdFound, chemHitsIdFoundBoth  > 0 ? (float)chemHitsdifferentIdFound / (float)chemHitsIdFoundBoth * 100 : 0);
@@ -3,6 +3,7 @@ package de.berlin.hu.uima.ae.normalizer;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -24,10 +25,14 @@ public class StringComparator {
 		return diceCoefficient(name1, name2, 2);
 	}
 	
+	private static String normalize(String s) {
+		return s.trim().toLowerCase().replaceAll("\\s+", " ");
+	}
+	
 	public static Set<String> getNGrams(String s, int n) {
 		n = n < 2 ? 2 : n;
 		
-		s = s.trim().toLowerCase().replaceAll("\\s+", " ");
+		s = normalize(s);
 		
 		char padChar = Character.MIN_VALUE;
 		for (int i = 0 ; i < n-1; i++) {
@@ -44,11 +49,66 @@ public class StringComparator {
 	}
 	
 	/**
-	 * Calculates the dice coefficient for two strings using n-grams.
+	 * Returns the distinct bigrams of a string, normalized and padded like {@link #getNGrams(String, int)}, as a
+	 * sorted array of ints (the first character in the upper, the second in the lower 16 bits). Unlike the
+	 * n-gram sets, these can be kept and compared repeatedly without hashing or creating substrings.
 	 * 
-	 * @param s1 the first string
-	 * @param s2 the second string
-	 * @param n the "n" in n-gram
+	 * @param s the string
+	 * @return the sorted distinct bigrams
+	 */
+	public static int[] getBigrams(String s) {
+		s = normalize(s);
+		
+		int[] bigrams = new int[s.length() + 1];
+		char previous = Character.MIN_VALUE;
+		for (int i = 0; i <= s.length(); i++) {
+			char c = i < s.length() ? s.charAt(i) : Character.MIN_VALUE;
+			bigrams[i] = previous << 16 | c;
+			previous = c;
+		}
+		Arrays.sort(bigrams);
+		
+		int distinct = 0;
+		for (int i = 0; i < bigrams.length; i++) {
+			if (distinct == 0 || bigrams[i] != bigrams[distinct - 1]) {
+				bigrams[distinct++] = bigrams[i];
+			}
+		}
+		return distinct < bigrams.length ? Arrays.copyOf(bigrams, distinct) : bigrams;
+	}
+	
+	/**
+	 * Calculates the dice coefficient for two bigram arrays returned by {@link #getBigrams(String)}.
+	 * 
+	 * @param b1 the bigrams of the first string
+	 * @param b2 the bigrams of the second string
+	 * @return the dice coefficient
+	 */
+	public static float diceCoefficient(int[] b1, int[] b2) {
+		int intersection = 0;
+		int i = 0;
+		int j = 0;
+		while (i < b1.length && j < b2.length) {
+			if (b1[i] < b2[j]) {
+				i++;
+			} else if (b1[i] > b2[j]) {
+				j++;
+			} else {
+				intersection++;
+				i++;
+				j++;
+			}
+		}
+		
+		// calculate dice coefficient
+		return (float)2 * intersection / (b1.length + b2.length);
+	}
+	
+	/**
+	 * Calculates the dice coefficient for two n-gram sets.
+	 * 
+	 * @param s1 the n-grams of the first string
+	 * @param s2 the n-grams of the second string
 	 * @return the dice coefficient
 	 */
 	public static float diceCoefficient(Set<String> s1, Set<String> s2) {
@@ -69,10 +129,13 @@ public class StringComparator {
 	 */
 	public static float diceCoefficient(String s1, String s2, int n) {
 		n = n < 2 ? 2 : n;
+		if (n == 2) {
+			return diceCoefficient(getBigrams(s1), getBigrams(s2));
+		}
 		
 		// read n-grams
 		Set<String> ngrams1 = getNGrams(s1, n);
-		Set<String> ngrams2 = getNGrams(s1, n);
+		Set<String> ngrams2 = getNGrams(s2, n);
 		
 		Set<String> intersection = new HashSet<String>(ngrams1);
 		intersection.retainAll(ngrams2);
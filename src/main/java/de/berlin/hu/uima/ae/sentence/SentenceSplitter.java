@@ -0,0 +1,145 @@
+package de.berlin.hu.uima.ae.sentence;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A deterministic sentence splitter for biomedical abstracts. A sentence ends at a period, question mark or
+ * exclamation mark (including directly following terminators, closing brackets and quotes) that is followed by
+ * whitespace and something that can start a sentence: an upper case or non-latin letter, a digit, an opening bracket
+ * or quote, or a lower case word containing an upper case letter or digit (mRNA, p53, trans-Resveratrol). A period
+ * after a known abbreviation (e.g., et al., Fig.) never ends a sentence, and neither do periods inside a word, such as
+ * in decimal numbers (0.5), formulas (CuSO4.5H2O) or chemical names. An empty line always ends a sentence.
+ *
+ * Splitters are immutable and can be used by several threads.
+ */
+public class SentenceSplitter {
+	/** abbreviations without their final period, lower case */
+	private static final String[] ABBREVIATIONS = {"e.g", "i.e", "al", "approx", "ca", "cf", "vs", "viz", "resp", "incl",
+		"fig", "figs", "tab", "ref", "refs", "eq", "eqs", "no", "nos", "vol", "pp", "wt", "conc", "sp", "spp", "subsp",
+		"ssp", "var", "cv", "dr", "prof", "mr", "mrs", "ms", "st", "inc", "ltd", "co", "corp", "dept", "univ", "jr", "sr",
+		"jan", "feb", "mar", "apr", "jun", "jul", "aug", "sep", "sept", "oct", "nov", "dec"};
+
+	private final Set<String> abbreviations;
+
+	public SentenceSplitter() {
+		this(Arrays.asList(ABBREVIATIONS));
+	}
+
+	/**
+	 * @param abbreviations the abbreviations without their final period, e.g. "e.g" and "Fig"; case is ignored
+	 */
+	public SentenceSplitter(Collection<String> abbreviations) {
+		this.abbreviations = new HashSet<String>();
+		for (String abbreviation : abbreviations) {
+			this.abbreviations.add(abbreviation.toLowerCase());
+		}
+	}
+
+	/**
+	 * Splits {@code text[begin..end)} into sentences.
+	 * @return the begin and end offsets of the sentences in the text, without surrounding whitespace
+	 */
+	public List<int[]> split(CharSequence text, int begin, int end) {
+		List<int[]> sentences = new ArrayList<int[]>();
+		int start = skipWhitespace(text, begin, end);
+		int i = start;
+		while (i < end) {
+			char c = text.charAt(i);
+			if (c == '.' || c == '?' || c == '!') {
+				int terminatorEnd = i + 1;
+				while (terminatorEnd < end && isTerminatorContinuation(text.charAt(terminatorEnd))) {
+					terminatorEnd++;
+				}
+				int next = skipWhitespace(text, terminatorEnd, end);
+				if (next > terminatorEnd && next < end && (c != '.' || !isAbbreviation(text, start, i)) && startsSentence(text, next, end)) {
+					sentences.add(new int[] {start, terminatorEnd});
+					start = next;
+				}
+				i = terminatorEnd;
+			} else if (c == '\n' && isEmptyLine(text, i + 1, end)) {
+				int sentenceEnd = trimEnd(text, start, i);
+				if (sentenceEnd > start) {
+					sentences.add(new int[] {start, sentenceEnd});
+				}
+				start = skipWhitespace(text, i + 1, end);
+				i = start;
+			} else {
+				i++;
+			}
+		}
+		int sentenceEnd = trimEnd(text, start, end);
+		if (sentenceEnd > start) {
+			sentences.add(new int[] {start, sentenceEnd});
+		}
+		return sentences;
+	}
+
+	private static boolean isTerminatorContinuation(char c) {
+		return c == '.' || c == '?' || c == '!' || c == ')' || c == ']' || c == '}' || c == '"' || c == '\'' || c == '”' || c == '’';
+	}
+
+	/**
+	 * @return whether the word ending at the period at position {@code period} is an abbreviation
+	 */
+	private boolean isAbbreviation(CharSequence text, int start, int period) {
+		int wordStart = period;
+		while (wordStart > start && !Character.isWhitespace(text.charAt(wordStart - 1))) {
+			wordStart--;
+		}
+		while (wordStart < period && "([{\"'".indexOf(text.charAt(wordStart)) >= 0) {
+			wordStart++;
+		}
+		return wordStart < period && abbreviations.contains(text.subSequence(wordStart, period).toString().toLowerCase());
+	}
+
+	private static boolean startsSentence(CharSequence text, int position, int end) {
+		char c = text.charAt(position);
+		if (Character.isUpperCase(c) || Character.isDigit(c) || "([{\"'“‘".indexOf(c) >= 0 || (c > 127 && Character.isLetter(c))) {
+			return true;
+		}
+		if (!Character.isLowerCase(c)) {
+			return false;
+		}
+		// lower case words only start sentences if they look like a gene, protein or chemical name
+		for (int i = position + 1; i < end && !Character.isWhitespace(text.charAt(i)); i++) {
+			if (Character.isUpperCase(text.charAt(i)) || Character.isDigit(text.charAt(i))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return whether the line starting at the given position contains only whitespace
+	 */
+	private static boolean isEmptyLine(CharSequence text, int position, int end) {
+		for (int i = position; i < end; i++) {
+			char c = text.charAt(i);
+			if (c == '\n') {
+				return true;
+			} else if (!Character.isWhitespace(c)) {
+				return false;
+			}
+		}
+		return false;
+	}
+
+	private static int skipWhitespace(CharSequence text, int position, int end) {
+		while (position < end && Character.isWhitespace(text.charAt(position))) {
+			position++;
+		}
+		return position;
+	}
+
+	private static int trimEnd(CharSequence text, int start, int end) {
+		while (end > start && Character.isWhitespace(text.charAt(end - 1))) {
+			end--;
+		}
+		return end;
+	}
+}
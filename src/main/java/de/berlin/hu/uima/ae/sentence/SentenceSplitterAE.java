@@ -0,0 +1,38 @@
+package de.berlin.hu.uima.ae.sentence;
+
+import opennlp.uima.Sentence;
+import org.apache.uima.analysis_component.JCasAnnotator_ImplBase;
+import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
+import org.apache.uima.jcas.JCas;
+import org.uimafit.util.JCasUtil;
+
+import de.berlin.hu.types.PubmedDocument;
+
+/**
+ * Adds the sentences found by a {@link SentenceSplitter} as OpenNLP sentences, like the OpenNLP sentence detector,
+ * so that they can be converted by the OpenNLP to U-Compare sentence converter. Every document is split separately;
+ * if there are no documents, the whole text is split.
+ */
+public class SentenceSplitterAE extends JCasAnnotator_ImplBase {
+	private static final SentenceSplitter splitter = new SentenceSplitter();
+
+	@Override
+	public void process(JCas aJCas) throws AnalysisEngineProcessException {
+		String text = aJCas.getDocumentText();
+		boolean hasDocuments = false;
+		for (PubmedDocument document : JCasUtil.iterate(aJCas, PubmedDocument.class)) {
+			addSentences(aJCas, text, document.getBegin(), document.getEnd());
+			hasDocuments = true;
+		}
+		if (!hasDocuments) {
+			addSentences(aJCas, text, 0, text.length());
+		}
+	}
+
+	private void addSentences(JCas aJCas, String text, int begin, int end) {
+		for (int[] span : splitter.split(text, begin, end)) {
+			Sentence sentence = new Sentence(aJCas, span[0], span[1]);
+			sentence.addToIndexes();
+		}
+	}
+}
@@ -0,0 +1,163 @@
+package de.berlin.hu.uima.ae.sentence;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import opennlp.uima.Sentence;
+
+import org.apache.uima.UIMAException;
+import org.apache.uima.UIMAFramework;
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.collection.CollectionReader;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.resource.metadata.TypeSystemDescription;
+import org.apache.uima.util.XMLInputSource;
+import org.uimafit.factory.AnalysisEngineFactory;
+import org.uimafit.factory.CollectionReaderFactory;
+import org.uimafit.factory.JCasFactory;
+import org.uimafit.util.JCasUtil;
+
+import de.berlin.hu.chemspot.ChemSpot;
+import de.berlin.hu.chemspot.ChemSpotConfiguration;
+import de.berlin.hu.chemspot.ChemSpotConfiguration.Component;
+import de.berlin.hu.chemspot.ChemicalNEREvaluator;
+import de.berlin.hu.chemspot.Mention;
+import de.berlin.hu.wbi.common.research.Evaluator;
+
+/**
+ * Compares the OpenNLP sentence detector with the Genia model to the {@link SentenceSplitter}: the throughput on a
+ * text, how many of the sentence ends of the Genia model the splitter finds, and, if a corpus is given, the precision,
+ * recall and F1 score of the CRF tagger (without the other taggers) on the sentences of either.
+ *
+ * Usage: SentenceSplitterBenchmark [text file, default resources/sample.txt] [directory of an IOB corpus]
+ */
+public class SentenceSplitterBenchmark {
+	private static final String[] ENGINES = {"genia", "rules"};
+	private static final Component[] CRF_COMPONENTS = {Component.TOKENIZER, Component.SENTENCE_DETECTOR, Component.CRF,
+		Component.ANNOTATION_MERGER, Component.STOPWORD_FILTER};
+	private static final long MIN_TIME = 2000000000L;
+
+	private static String readText(String path) throws IOException {
+		InputStream in = path != null ? new FileInputStream(path) : SentenceSplitterBenchmark.class.getClassLoader().getResourceAsStream("resources/sample.txt");
+		if (in == null) {
+			throw new IOException("resources/sample.txt is not on the classpath");
+		}
+		StringBuilder text = new StringBuilder();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+		try {
+			String line = reader.readLine();
+			while (line != null) {
+				text.append(line).append('\n');
+				line = reader.readLine();
+			}
+		} finally {
+			reader.close();
+		}
+		return text.toString();
+	}
+
+	private static AnalysisEngine createSentenceDetector(String engine) throws UIMAException, IOException {
+		ClassLoader classLoader = SentenceSplitterBenchmark.class.getClassLoader();
+		if (engine.equals("rules")) {
+			return AnalysisEngineFactory.createPrimitive(UIMAFramework.getXMLParser().parseAnalysisEngineDescription(new XMLInputSource(classLoader
+					.getResource("desc/ae/sentence/SentenceSplitterAE.xml"))));
+		}
+		return AnalysisEngineFactory.createPrimitive(UIMAFramework.getXMLParser().parseAnalysisEngineDescription(new XMLInputSource(classLoader
+				.getResource("desc/ae/tagger/opennlp/SentenceDetector.xml"))), "opennlp.uima.ModelName", classLoader.getResource("resources/genia/SentDetectGenia.bin.gz").toString());
+	}
+
+	/**
+	 * @return the end offsets of the sentences found by an engine, after splitting the text repeatedly for a fixed time
+	 */
+	private static Set<Integer> measureThroughput(String engine, JCas jcas, String text) throws UIMAException, IOException {
+		AnalysisEngine sentenceDetector = createSentenceDetector(engine);
+		for (int i = 0; i < 10; i++) {
+			jcas.reset();
+			jcas.setDocumentText(text);
+			sentenceDetector.process(jcas);
+		}
+		long runs = 0;
+		long start = System.nanoTime();
+		long time;
+		do {
+			jcas.reset();
+			jcas.setDocumentText(text);
+			sentenceDetector.process(jcas);
+			runs++;
+			time = System.nanoTime() - start;
+		} while (time < MIN_TIME);
+
+		Set<Integer> ends = new HashSet<Integer>();
+		for (Sentence sentence : JCasUtil.iterate(jcas, Sentence.class)) {
+			ends.add(sentence.getEnd());
+		}
+		System.out.printf("%-6s %8.2f M chars/s, %d sentences%n", engine, runs * text.length() / (time / 1e3), ends.size());
+		sentenceDetector.destroy();
+		return ends;
+	}
+
+	private static void evaluateCRF(String engine, TypeSystemDescription typeSystem, String pathToCorpus) throws UIMAException, IOException {
+		StringBuilder configuration = new StringBuilder("component.sentence_detector.engine = " + engine + "\n");
+		for (Component component : Component.values()) {
+			boolean use = false;
+			for (Component crfComponent : CRF_COMPONENTS) {
+				use |= component == crfComponent;
+			}
+			configuration.append("component." + component.toString().toLowerCase() + " = " + use + "\n");
+		}
+		ChemSpotConfiguration.initialize(new ByteArrayInputStream(configuration.toString().getBytes("UTF-8")), true);
+		ChemSpot chemspot = new ChemSpot();
+
+		CollectionReader reader = CollectionReaderFactory.createCollectionReader(UIMAFramework.getXMLParser().parseCollectionReaderDescription(new XMLInputSource(SentenceSplitterBenchmark.class.getClassLoader()
+				.getResource("desc/cr/ScaiCorpusCR.xml"))), "InputDirectory", pathToCorpus, "UseGoldStandardAnnotations", true, "GoldstandardTypeSuffix" , "", "BrowseSubdirectories", true, "IncludeSuffixes", new String[]{"iob", "iob2"});
+		JCas jcas = JCasFactory.createJCas(typeSystem);
+		int tps = 0;
+		int fps = 0;
+		int fns = 0;
+		long time = 0;
+		while (reader.hasNext()) {
+			jcas.reset();
+			reader.getNext(jcas.getCas());
+			long start = System.nanoTime();
+			List<Mention> mentions = chemspot.tag(jcas);
+			time += System.nanoTime() - start;
+
+			Evaluator<Mention, Mention> evaluator = new Evaluator<Mention, Mention>(mentions, ChemSpot.getGoldstandardAnnotations(jcas));
+			evaluator.evaluate();
+			tps += evaluator.getTruePositives().size();
+			fps += evaluator.getFalsePositives().size();
+			fns += evaluator.getFalseNegatives().size();
+		}
+		reader.destroy();
+
+		System.out.printf("%s, tagged in %.1f s:%n%s%n", engine, time / 1e9, ChemicalNEREvaluator.getEvaluationResult(tps, fps, fns));
+	}
+
+	public static void main(String[] args) throws UIMAException, IOException {
+		String text = readText(args.length > 0 ? args[0] : null);
+		TypeSystemDescription typeSystem = UIMAFramework.getXMLParser().parseTypeSystemDescription(new XMLInputSource(SentenceSplitterBenchmark.class.getClassLoader()
+				.getResource("desc/TypeSystem.xml")));
+		JCas jcas = JCasFactory.createJCas(typeSystem);
+		System.out.printf("text of %d characters%n", text.length());
+
+		Set<Integer> geniaEnds = measureThroughput(ENGINES[0], jcas, text);
+		Set<Integer> rulesEnds = measureThroughput(ENGINES[1], jcas, text);
+		Set<Integer> commonEnds = new HashSet<Integer>(rulesEnds);
+		commonEnds.retainAll(geniaEnds);
+		System.out.printf("%d sentence ends in common, %.1f %% of the Genia model's and %.1f %% of the rules'%n", commonEnds.size(),
+				100.0 * commonEnds.size() / Math.max(1, geniaEnds.size()), 100.0 * commonEnds.size() / Math.max(1, rulesEnds.size()));
+
+		if (args.length > 1) {
+			for (String engine : ENGINES) {
+				evaluateCRF(engine, typeSystem, args[1]);
+			}
+		}
+	}
+}
@@ -0,0 +1,112 @@
+package de.berlin.hu.uima.ae.tagger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
+import org.apache.uima.jcas.JCas;
+
+/**
+ * Lets the taggers of a document tag at the same time without sharing or copying the CAS. A tagger reads what it
+ * needs from the CAS in its {@code process} method and passes the actual tagging to {@link #run(JCas, Callable)}.
+ * Usually the tagging runs and its entities are added to the CAS right away. While a deferred tagging is active on
+ * the calling thread (see {@link #begin(ExecutorService)}), the tagging is only started on the executor, and the
+ * entities of all taggers are added by {@link #addTo(JCas)} afterwards, tagger by tagger in the order the taggers
+ * were called, as a CAS must only be read and changed by one thread.
+ */
+public class DeferredTagging {
+	/**
+	 * The entities found by a tagging, which are added to the CAS by the thread owning it.
+	 */
+	public interface Result {
+		void addTo(JCas aJCas);
+	}
+
+	private static final ThreadLocal<DeferredTagging> active = new ThreadLocal<DeferredTagging>();
+
+	private final ExecutorService executor;
+	private final List<Future<? extends Result>> results = new ArrayList<Future<? extends Result>>();
+	private AnalysisEngineProcessException failure = null;
+
+	private DeferredTagging(ExecutorService executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * Defers the taggings started by the calling thread until {@link #end()}.
+	 */
+	public static DeferredTagging begin(ExecutorService executor) {
+		DeferredTagging tagging = new DeferredTagging(executor);
+		active.set(tagging);
+		return tagging;
+	}
+
+	/**
+	 * Runs a tagging and adds its entities to the CAS, or starts it on the executor if a deferred tagging is active.
+	 * The tagging must not access the CAS.
+	 */
+	public static void run(JCas aJCas, Callable<? extends Result> tagging) throws AnalysisEngineProcessException {
+		DeferredTagging deferred = active.get();
+		if (deferred != null) {
+			deferred.results.add(deferred.executor.submit(tagging));
+			return;
+		}
+		Result result;
+		try {
+			result = tagging.call();
+		} catch (AnalysisEngineProcessException e) {
+			throw e;
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new AnalysisEngineProcessException(e);
+		}
+		result.addTo(aJCas);
+	}
+
+	/**
+	 * Stops deferring taggings and waits for all started ones, even if one failed, so that none is still running
+	 * afterwards.
+	 */
+	public void end() {
+		active.remove();
+		for (Future<? extends Result> result : results) {
+			try {
+				result.get();
+			} catch (ExecutionException e) {
+				if (failure == null) {
+					failure = e.getCause() instanceof AnalysisEngineProcessException ? (AnalysisEngineProcessException) e.getCause() : new AnalysisEngineProcessException(e.getCause());
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				if (failure == null) {
+					failure = new AnalysisEngineProcessException(e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Adds the entities of all taggings to the CAS in the order the taggings were started. Must be called after
+	 * {@link #end()}.
+	 * @throws AnalysisEngineProcessException the first failure of a tagging, in which case no entities are added
+	 */
+	public void addTo(JCas aJCas) throws AnalysisEngineProcessException {
+		if (failure != null) {
+			throw failure;
+		}
+		for (Future<? extends Result> result : results) {
+			try {
+				result.get().addTo(aJCas);
+			} catch (ExecutionException e) {
+				throw new AnalysisEngineProcessException(e.getCause());
+			} catch (InterruptedException e) {
+				throw new AnalysisEngineProcessException(e);
+			}
+		}
+	}
+}
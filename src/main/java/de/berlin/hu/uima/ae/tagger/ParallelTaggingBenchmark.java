@@ -0,0 +1,142 @@
+package de.berlin.hu.uima.ae.tagger;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.uima.UIMAException;
+import org.apache.uima.UIMAFramework;
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.analysis_engine.AnalysisEngineDescription;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.resource.metadata.TypeSystemDescription;
+import org.apache.uima.util.XMLInputSource;
+import org.u_compare.shared.semantic.NamedEntity;
+import org.uimafit.factory.JCasFactory;
+import org.uimafit.util.JCasUtil;
+
+import de.berlin.hu.uima.ae.tagger.brics.BricsTagger;
+
+/**
+ * Measures the latency of tagging a document with the dictionary, formula and abbreviation taggers one after the
+ * other and at the same time (see {@link DeferredTagging}), and checks that both find the same entities. The text
+ * is repeated to measure longer documents.
+ *
+ * Usage: ParallelTaggingBenchmark [dictionary, default none] [text file, default resources/sample.txt] [repetitions, default 1]
+ */
+public class ParallelTaggingBenchmark {
+	private static final int WARM_UP_RUNS = 20;
+	private static final long MIN_TIME = 10000000000L;
+
+	private static String readText(String path) throws IOException {
+		InputStream in = path != null ? new FileInputStream(path) : ParallelTaggingBenchmark.class.getClassLoader().getResourceAsStream("resources/sample.txt");
+		if (in == null) {
+			throw new IOException("resources/sample.txt is not on the classpath");
+		}
+		StringBuilder text = new StringBuilder();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+		try {
+			String line = reader.readLine();
+			while (line != null) {
+				text.append(line).append('\n');
+				line = reader.readLine();
+			}
+		} finally {
+			reader.close();
+		}
+		return text.toString();
+	}
+
+	private static AnalysisEngine createEngine(String path, Object... parameters) throws UIMAException, IOException {
+		AnalysisEngineDescription description = UIMAFramework.getXMLParser().parseAnalysisEngineDescription(new XMLInputSource(ParallelTaggingBenchmark.class.getClassLoader()
+				.getResource(path)));
+		for (int i = 0; i < parameters.length; i += 2) {
+			description.getAnalysisEngineMetaData().getConfigurationParameterSettings().setParameterValue((String) parameters[i], parameters[i + 1]);
+		}
+		return UIMAFramework.produceAnalysisEngine(description);
+	}
+
+	private static String getEntities(JCas jcas) {
+		StringBuilder entities = new StringBuilder();
+		for (NamedEntity entity : JCasUtil.iterate(jcas, NamedEntity.class)) {
+			entities.append(entity.getBegin()).append('-').append(entity.getEnd()).append(entity.getSource()).append(' ');
+		}
+		return entities.toString();
+	}
+
+	/**
+	 * @return the time in nanoseconds to tag the document, one tagger after the other if there is no executor
+	 */
+	private static long tag(JCas jcas, String text, AnalysisEngine tokenizer, List<AnalysisEngine> taggers, ExecutorService executor) throws UIMAException {
+		jcas.reset();
+		jcas.setDocumentText(text);
+		tokenizer.process(jcas);
+		long start = System.nanoTime();
+		if (executor == null) {
+			for (AnalysisEngine tagger : taggers) {
+				tagger.process(jcas);
+			}
+		} else {
+			DeferredTagging tagging = DeferredTagging.begin(executor);
+			try {
+				for (AnalysisEngine tagger : taggers) {
+					tagger.process(jcas);
+				}
+			} finally {
+				tagging.end();
+			}
+			tagging.addTo(jcas);
+		}
+		return System.nanoTime() - start;
+	}
+
+	public static void main(String[] args) throws UIMAException, IOException {
+		String text = readText(args.length > 1 ? args[1] : null);
+		StringBuilder repeatedText = new StringBuilder();
+		for (int i = 0; i < (args.length > 2 ? Integer.parseInt(args[2]) : 1); i++) {
+			repeatedText.append(text);
+		}
+		text = repeatedText.toString();
+
+		TypeSystemDescription typeSystem = UIMAFramework.getXMLParser().parseTypeSystemDescription(new XMLInputSource(ParallelTaggingBenchmark.class.getClassLoader()
+				.getResource("desc/TypeSystem.xml")));
+		AnalysisEngine tokenizer = createEngine("desc/ae/tokenizer/FineGrainedTokenizerAE.xml");
+		List<AnalysisEngine> taggers = new ArrayList<AnalysisEngine>();
+		if (args.length > 0) {
+			taggers.add(createEngine("desc/ae/tagger/BricsTaggerAE.xml", BricsTagger.PATH_TO_DICTIONARY, args[0]));
+		}
+		taggers.add(createEngine("desc/ae/tagger/ChemicalFormulaTaggerAE.xml"));
+		taggers.add(createEngine("desc/ae/tagger/AbbreviationTaggerAE.xml"));
+		ExecutorService executor = Executors.newCachedThreadPool();
+		System.out.printf("text of %d characters, %d taggers, %d processors%n", text.length(), taggers.size(), Runtime.getRuntime().availableProcessors());
+
+		JCas sequentialJCas = JCasFactory.createJCas(typeSystem);
+		JCas parallelJCas = JCasFactory.createJCas(typeSystem);
+		// both ways are measured alternately, so that they are measured in the same state of the JIT compiler
+		long sequentialTime = 0;
+		long parallelTime = 0;
+		int runs = 0;
+		long start = System.nanoTime();
+		for (int i = 0; i < WARM_UP_RUNS || System.nanoTime() - start < MIN_TIME; i++) {
+			long sequentialRunTime = tag(sequentialJCas, text, tokenizer, taggers, null);
+			long parallelRunTime = tag(parallelJCas, text, tokenizer, taggers, executor);
+			if (i >= WARM_UP_RUNS) {
+				sequentialTime += sequentialRunTime;
+				parallelTime += parallelRunTime;
+				runs++;
+			}
+		}
+		System.out.printf("sequential %8.2f ms per document%n", sequentialTime / 1e6 / runs);
+		System.out.printf("parallel   %8.2f ms per document%n", parallelTime / 1e6 / runs);
+		if (!getEntities(sequentialJCas).equals(getEntities(parallelJCas))) {
+			System.out.println("WARNING: the sequential and parallel taggers found different entities");
+		}
+		executor.shutdown();
+	}
+}
@@ -1,7 +1,9 @@
 package de.berlin.hu.uima.ae.tagger.abbrev;
 
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 import org.apache.uima.analysis_component.JCasAnnotator_ImplBase;
 import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
@@ -12,6 +14,7 @@ import org.uimafit.util.JCasUtil;
 import de.berlin.hu.chemspot.ChemSpot;
 import de.berlin.hu.chemspot.Mention;
 import de.berlin.hu.types.PubmedDocument;
+import de.berlin.hu.uima.ae.tagger.DeferredTagging;
 import de.berlin.hu.util.Constants;
 import de.berlin.hu.util.Constants.ChemicalType;
 
@@ -25,15 +28,44 @@ public class AbbreviationTagger extends JCasAnnotator_ImplBase {
 
 	@Override
 	public void process(JCas aJCas) throws AnalysisEngineProcessException {
-		String text = aJCas.getDocumentText();
+		final String docText = aJCas.getDocumentText();
+		
+		// get PubMed documents, only their spans are needed while tagging
+		final List<int[]> documents = new ArrayList<int[]>();
+		for (PubmedDocument document : JCasUtil.iterate(aJCas, PubmedDocument.class)) {
+			documents.add(new int[] {document.getBegin(), document.getEnd()});
+		}
+		
+		DeferredTagging.run(aJCas, new Callable<DeferredTagging.Result>() {
+			public DeferredTagging.Result call() {
+				final List<int[]> spans = new ArrayList<int[]>();
+				final List<String> ids = new ArrayList<String>();
+				findAbbreviations(docText, documents, spans, ids);
+				return new DeferredTagging.Result() {
+					public void addTo(JCas aJCas) {
+						for (int i = 0; i < spans.size(); i++) {
+							createAbbreviationAnnotation(aJCas, spans.get(i)[0], spans.get(i)[1], ids.get(i));
+						}
+					}
+				};
+			}
+		});
+	}
+	
+	/**
+	 * Finds every occurrence of the abbreviations of the text within the PubMed document of the abbreviation.
+	 * @param spans the list to which the begin and end of every occurrence are added
+	 * @param ids the list to which the id of the abbreviation of every occurrence is added
+	 */
+	private void findAbbreviations(String docText, List<int[]> documents, List<int[]> spans, List<String> ids) {
+		String text = docText;
 		
 		// get abbreviations
 		List<Mention> abbreviations = abbrevTagger.getMentions(text);
 		ChemSpot.printTime("ABBREV");
 		
-		// get PubMed documents
-		Iterator<PubmedDocument> pmIterator =  JCasUtil.iterator(aJCas, PubmedDocument.class);
-		PubmedDocument currDocument = TAG_PUBMED && pmIterator.hasNext() ? pmIterator.next() : null;
+		Iterator<int[]> pmIterator = documents.iterator();
+		int[] currDocument = TAG_PUBMED && pmIterator.hasNext() ? pmIterator.next() : null;
 		
 		for (Mention abbr : abbreviations) {
 			if (abbr.getText().length() < 2) {
@@ -41,17 +73,17 @@ public class AbbreviationTagger extends JCasAnnotator_ImplBase {
 			} 
 			
 			// find PubMed document that the current abbreviation belongs to
-			while (TAG_PUBMED && pmIterator.hasNext() && currDocument.getEnd() < abbr.getStart()) {
+			while (TAG_PUBMED && pmIterator.hasNext() && currDocument[1] < abbr.getStart()) {
 				currDocument = pmIterator.next();
 			}
 			
 			// select PubMed document or the whole text if there were none
 			int offset = -1;
 			if (currDocument != null) {
-				text = currDocument.getCoveredText();
-				offset = currDocument.getBegin();
+				text = docText.substring(currDocument[0], currDocument[1]);
+				offset = currDocument[0];
 			} else {
-				text = aJCas.getDocumentText();
+				text = docText;
 				offset = 0;
 			}
 			
@@ -63,7 +95,8 @@ public class AbbreviationTagger extends JCasAnnotator_ImplBase {
 					int begin = offset + index;
 					int end = offset + index + abbr.getText().length();
 				
-					createAbbreviationAnnotation(aJCas, begin, end, abbr.getCHID());
+					spans.add(new int[] {begin, end});
+					ids.add(abbr.getCHID());
 				}
 			}
 		}
@@ -2,6 +2,7 @@ package de.berlin.hu.uima.ae.tagger.banner;
 
 import banner.tagging.CRFTagger;
 import banner.types.Mention;
+import de.berlin.hu.uima.ae.tagger.DeferredTagging;
 import de.berlin.hu.uima.util.Util;
 import de.berlin.hu.util.Constants;
 import de.berlin.hu.util.Constants.ChemicalType;
@@ -21,10 +22,15 @@ import org.u_compare.shared.syntactic.Sentence;
 import java.io.File;
 import java.io.IOException;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @author Tim Rocktäschel
@@ -38,12 +44,18 @@ public class BannerTagger extends JCasAnnotator_ImplBase {
 	private static final String BANNER_MODEL_FILE_PARAM = "BannerModelFile";
 	private static final String BANNER_CONFIG_FILE_PARAM = "BannerConfigFile";
 	private static final String THRESHOLD_PARAM = "Threshold";
+	public static final String PARALLEL = "Parallel";
+
+	// tags the sentences of a document in parallel, shared by all instances
+	private static final ForkJoinPool pool = new ForkJoinPool();
 
 	//FIXME: remove hardcoded switch to choose between loading model file from external resource or parameter
 //	private static final boolean USE_RESOURCE = true; 
 	private static final boolean USE_RESOURCE = false; 
 
 	private CRFTagger tagger;
+	// the taggers of the tasks tagging the sentences of a document in parallel, starting with tagger
+	private List<CRFTagger> taggers;
 //	private CRFTaggerStochasticGradient tagger;
 
 	private URL bannerModelFile;
@@ -57,6 +69,7 @@ public class BannerTagger extends JCasAnnotator_ImplBase {
 
 	private int documentCounter;
 	private XMLConfiguration config;
+	private boolean parallel = false;
 
 
     @Override
@@ -75,7 +88,20 @@ public class BannerTagger extends JCasAnnotator_ImplBase {
 				throw new ResourceInitializationException(e);
 			}			
 			threshold = Double.parseDouble(aContext.getConfigParameterValue(THRESHOLD_PARAM).toString());
+			if (aContext.getConfigParameterValue(PARALLEL) != null) {
+				parallel = (Boolean) aContext.getConfigParameterValue(PARALLEL);
+			}
+			// every instance loads its own tagger, as tagging runs the feature pipes of the model, which are not known
+			// to be stateless
 			tagger = CRFWrapper.load(bannerModelFile, null, null, null);
+			taggers = new ArrayList<CRFTagger>();
+			taggers.add(tagger);
+			if (parallel) {
+				// so does every further task tagging the sentences of a document in parallel
+				for (int i = 1; i < pool.getParallelism(); i++) {
+					taggers.add(CRFWrapper.load(bannerModelFile, null, null, null));
+				}
+			}
 //			tagger = NBestCRFTagger.load(bannerModelFile, lemmatiser, posTagger, null, N, true);
 //			tagger = NBestCRFTagger.load(bannerModelFile, LEMMATISER, POS_TAGGER, null, N, false); //then the sum is used for the same sequences
 		} catch (IOException e) {
@@ -89,13 +115,15 @@ public class BannerTagger extends JCasAnnotator_ImplBase {
 		FSIndex<Annotation> sentenceIndex = aJCas.getAnnotationIndex(Sentence.type);
 		Iterator<Annotation> sentenceIterator = sentenceIndex.iterator();
 		int sentenceCounter = 0;
-        Set<Mention> mentions = new HashSet<Mention>();
         String docText = aJCas.getDocumentText();
 
 		long start = System.currentTimeMillis();
+		// convert every sentence into a BANNER sentence first, as only this thread may access the CAS
+		final List<Integer> sentenceBegins = new ArrayList<Integer>();
+		final List<String> sentenceTexts = new ArrayList<String>();
+		final List<banner.types.Sentence> bannerSentences = new ArrayList<banner.types.Sentence>();
 		while (sentenceIterator.hasNext()) {
 			Sentence sentence = (Sentence) sentenceIterator.next();
-			// convert every sentence into a BANNER sentence
 			banner.types.Sentence bannerSentence = new banner.types.Sentence(sentenceCounter+"", documentCounter+"", sentence.getCoveredText());
 			// get tokens covered by the sentence
 			List<org.u_compare.shared.syntactic.Token> tokensInSentence = Util.getTokens(aJCas, sentence);
@@ -104,19 +132,39 @@ public class BannerTagger extends JCasAnnotator_ImplBase {
 			assert sentence.getCoveredText().equals(bannerSentence.getText());
 			assert tokensInSentence.size() == bannerSentence.getTokens().size() : (tokensInSentence.size() + " != " + bannerSentence.getTokens().size());							
 			
-			try {
-				tagger.tag(bannerSentence);
-			} catch (ArrayIndexOutOfBoundsException e) {
-				System.err.println("ERROR!");
-				System.err.println("Corpus:\t" + sentence.getCoveredText());
-				System.err.println("BANNER:\t" + bannerSentence.getText());
-			}
-
-			// annotate found entities
-            mentions.addAll(createAnnotations(aJCas, sentence.getBegin(), bannerSentence));
+			sentenceBegins.add(sentence.getBegin());
+			sentenceTexts.add(sentence.getCoveredText());
+			bannerSentences.add(bannerSentence);
 			sentenceCounter++;
 		}
 
+		DeferredTagging.run(aJCas, new Callable<DeferredTagging.Result>() {
+			public DeferredTagging.Result call() throws Exception {
+				if (taggers.size() > 1 && bannerSentences.size() > 1) {
+					List<SentenceTagging> tasks = new ArrayList<SentenceTagging>();
+					AtomicInteger next = new AtomicInteger();
+					for (CRFTagger taskTagger : taggers) {
+						tasks.add(new SentenceTagging(taskTagger, sentenceTexts, bannerSentences, next));
+					}
+					for (Future<Void> task : pool.invokeAll(tasks)) {
+						task.get();
+					}
+				} else {
+					for (int i = 0; i < bannerSentences.size(); i++) {
+						tag(tagger, sentenceTexts.get(i), bannerSentences.get(i));
+					}
+				}
+				return new DeferredTagging.Result() {
+					public void addTo(JCas aJCas) {
+						// annotate found entities in the order of the sentences
+						for (int i = 0; i < bannerSentences.size(); i++) {
+							createAnnotations(aJCas, sentenceBegins.get(i), bannerSentences.get(i));
+						}
+					}
+				};
+			}
+		});
+
 /*
         //propagate all findings...
         for (Mention mention : mentions) {
@@ -146,6 +194,41 @@ public class BannerTagger extends JCasAnnotator_ImplBase {
 		documentCounter++;
 	}
 
+	private static void tag(CRFTagger tagger, String sentenceText, banner.types.Sentence bannerSentence) {
+		try {
+			tagger.tag(bannerSentence);
+		} catch (ArrayIndexOutOfBoundsException e) {
+			System.err.println("ERROR!");
+			System.err.println("Corpus:\t" + sentenceText);
+			System.err.println("BANNER:\t" + bannerSentence.getText());
+		}
+	}
+
+	/**
+	 * Tags the sentences of a document with one tagger, taking the next untagged sentence until there is none left.
+	 * The tasks tagging a document at the same time each have their own tagger.
+	 */
+	private static class SentenceTagging implements Callable<Void> {
+		private final CRFTagger tagger;
+		private final List<String> texts;
+		private final List<banner.types.Sentence> sentences;
+		private final AtomicInteger next;
+
+		SentenceTagging(CRFTagger tagger, List<String> texts, List<banner.types.Sentence> sentences, AtomicInteger next) {
+			this.tagger = tagger;
+			this.texts = texts;
+			this.sentences = sentences;
+			this.next = next;
+		}
+
+		public Void call() {
+			for (int i = next.getAndIncrement(); i < sentences.size(); i = next.getAndIncrement()) {
+				tag(tagger, texts.get(i), sentences.get(i));
+			}
+			return null;
+		}
+	}
+
 	/**
 	 * converts each mention into an UIMA annotation
 	 */
@@ -13,13 +13,21 @@
 package de.berlin.hu.uima.ae.tagger.brics;
 
 import de.berlin.hu.chemspot.Mention;
+import de.berlin.hu.uima.ae.normalizer.IdTable;
 import de.berlin.hu.uima.ae.normalizer.Normalizer;
 import dk.brics.automaton.*;
 
+import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
@@ -28,107 +36,396 @@ import java.util.zip.ZipFile;
  * Date: 7/2/12
  * Time: 2:20 PM
  */
-public class BricsMatcher {
+public class BricsMatcher implements DictionaryMatcher {
 	public static final int DEFAULT_TERMS_PER_AUTOMATON = 100000;
-	
+	public static final String MAPPED_AUTOMATON_SUFFIX = ".automaton";
+	public static final String FOLDED_SUFFIX = ".folded";
+	public static final String OVERLAY_INFIX = ".overlay_";
+
     private Collection<RunAutomaton> matchers = new ArrayList<RunAutomaton>();
 
     public BricsMatcher() throws IOException, ClassNotFoundException {
-    	this(Normalizer.getIds().keySet(), DEFAULT_TERMS_PER_AUTOMATON);
+    	if (Normalizer.getIds() instanceof IdTable) {
+    		matchers.add(((IdTable) Normalizer.getIds()).getAutomaton());
+    	} else {
+    		System.out.print("Creating brics automaton...");
+    		matchers.add(BricsMatcher.createCompressedAutomaton(Normalizer.getIds().keySet()));
+    		System.out.println("Done.");
+    	}
     }
     
+    /**
+     * Builds a single dictionary automaton covering all given chemicals, so that a text is scanned only once
+     * regardless of the size of the dictionary.
+     * @param chemicals the dictionary entries
+     */
     public BricsMatcher(Collection<String> chemicals) throws IOException, ClassNotFoundException {
     	System.out.print("Creating brics automaton...");
-    	matchers.add(BricsMatcher.createAutomaton(chemicals));
+    	matchers.add(BricsMatcher.createCompressedAutomaton(chemicals));
     	System.out.println("Done.");
     }
     
     public BricsMatcher(Collection<String> chemicals, int termsPerAutomaton) throws IOException, ClassNotFoundException {
-    	System.out.print("Creating brics automata");
     	matchers.addAll(BricsMatcher.createAutomata(chemicals, termsPerAutomaton));
     	
     	System.out.println("Created " + matchers.size() + " brics automata.");
     }
 
-	private void storeAutomaton(RunAutomaton automaton, int pieceNumber) throws IOException {
-		FileOutputStream f = new FileOutputStream(String.format("unitedAutomata-%d.bin", pieceNumber));
-		try {
-			automaton.store(f);
-		} finally {
-			f.close();
-		}
-	}
-
     /**
-     * BricsMatcher loads a set of brics dictionary matchers packed in a zip file.
-     * @param pathToZippedBinaries Path to the zip file containing a set of brics dictionary matchers.
+     * Uses the automaton built for the chemicals of an ids file, cached as described in
+     * {@link #loadCachedAutomaton(Collection, File, boolean)}.
+     * @param chemicals the dictionary entries, i.e. the chemicals of the ids file
+     * @param idsFile the ids file the chemicals were read from
+     */
+    public BricsMatcher(Collection<String> chemicals, File idsFile) throws IOException, ClassNotFoundException {
+    	matchers.add(loadCachedAutomaton(chemicals, idsFile, false));
+    }
+    
+    /**
+     * Uses an existing automaton, e.g. the one of the normalizer's {@link IdTable}.
+     */
+    public BricsMatcher(RunAutomaton automaton) {
+    	matchers.add(automaton);
+    }
+    
+    /**
+     * BricsMatcher loads a set of brics dictionary matchers packed in a zip file. All pieces are merged into
+     * a single automaton so that {@link #match(String)} reads the text only once instead of once per piece.
+     * The merged automaton is stored next to the zip file in a flat binary format (see {@link MappedRunAutomaton})
+     * and on later starts memory-mapped from there instead of being deserialized again.
+     * @param pathToZippedBinaries Path to the zip file containing a set of brics dictionary matchers, or to a
+     * single (serialized or mapped) automaton file.
      * @throws IOException
      * @throws ClassNotFoundException
      */
     public BricsMatcher(String pathToZippedBinaries) throws IOException, ClassNotFoundException {
-		int bricsAutomata = 0;
+    	this(pathToZippedBinaries, false);
+    }
+    
+    /**
+     * Loads a dictionary like {@link #BricsMatcher(String)}, optionally ignoring case. A case-insensitive dictionary
+     * is merged from the lower case variants of all entries, so case variants of the same name share one entry, and
+     * matches any case variant of them (see {@link CompressedRunAutomaton#foldCase()}). It is stored separately from
+     * the case-sensitive automaton. The overlays of a zip file (see {@link #addOverlay(File, Collection)}) are matched
+     * alongside the merged automaton. A single mapped automaton file is used as it is.
+     * @param pathToZippedBinaries Path to the zip file containing a set of brics dictionary matchers, or to a
+     * single (serialized or mapped) automaton file.
+     * @param foldCase whether the dictionary should ignore case
+     */
+    public BricsMatcher(String pathToZippedBinaries, boolean foldCase) throws IOException, ClassNotFoundException {
+    	File dictionaryFile = new File(pathToZippedBinaries);
     	if (pathToZippedBinaries.endsWith(".zip")) {
-	        ZipFile zipFile = new ZipFile(pathToZippedBinaries);
-	        List<? extends ZipEntry> entries = Collections.list(zipFile.entries());
-			Automaton unitedAutomaton = null;
-			int piecesCount = 0;
-			int pieceSize = 1;
-	        for (ZipEntry entry : entries) {
-				bricsAutomata++;
-				System.out.printf("Loading %s (%d of %d)...\n", entry.getName(), bricsAutomata, entries.size());
-				RunAutomaton automaton = RunAutomaton.load(zipFile.getInputStream(entry));
-				if (pieceSize > 1) {
-					Automaton tempAutomaton = restoreAutomaton(automaton);
-					unitedAutomaton = unitedAutomaton != null ? unitedAutomaton.union(tempAutomaton) : tempAutomaton;
-					if (bricsAutomata % pieceSize == 0) {
-						RunAutomaton runAutomaton = new RunAutomaton(unitedAutomaton);
-						storeAutomaton(runAutomaton, ++piecesCount);
-						matchers.add(runAutomaton);
-						unitedAutomaton = null;
-					}
-				} else {
-					matchers.add(new CompressedRunAutomaton(automaton));
-				}
-	        }
-			if (unitedAutomaton != null) {
-				RunAutomaton runAutomaton = new RunAutomaton(unitedAutomaton);
-				storeAutomaton(runAutomaton, ++piecesCount);
-				matchers.add(runAutomaton);
-			}
+    		File mappedFile = getMappedAutomatonFile(dictionaryFile, foldCase);
+    		if (mappedFile.exists() && mappedFile.lastModified() >= dictionaryFile.lastModified()) {
+    			System.out.println("Mapping brics automaton " + mappedFile + "...");
+    			matchers.add(MappedRunAutomaton.load(mappedFile));
+    		} else {
+    			CompressedRunAutomaton automaton = loadZippedAutomata(dictionaryFile, foldCase);
+    			if (storeMappedAutomaton(automaton, mappedFile)) {
+    				matchers.add(MappedRunAutomaton.load(mappedFile));
+    			} else {
+    				matchers.add(automaton);
+    			}
+    		}
+    		addOverlays(dictionaryFile, foldCase);
+    	} else if (MappedRunAutomaton.isMappedAutomaton(dictionaryFile)) {
+    		System.out.println("Mapping brics automaton " + dictionaryFile + "...");
+    		matchers.add(MappedRunAutomaton.load(dictionaryFile));
     	} else {
-			matchers.add(RunAutomaton.load(new FileInputStream(pathToZippedBinaries)));
-			bricsAutomata++;
+    		FileInputStream in = new FileInputStream(dictionaryFile);
+    		try {
+    			RunAutomaton automaton = RunAutomaton.load(in);
+    			matchers.add(foldCase ? createFoldedAutomaton(automaton) : automaton);
+    		} finally {
+    			in.close();
+    		}
+    	}
+        System.out.println("Loaded brics automaton.");
+    }
+    
+    /**
+     * Adds the overlays of a zipped dictionary (see {@link #addOverlay(File, Collection)}) as further automata.
+     * Overlays are small, so case-insensitive variants are built when loading them instead of being stored.
+     */
+    private void addOverlays(File zippedDictionary, boolean foldCase) throws IOException {
+    	for (File overlayFile : getOverlayFiles(zippedDictionary)) {
+    		System.out.println("Mapping brics overlay automaton " + overlayFile + "...");
+    		RunAutomaton overlay = MappedRunAutomaton.load(overlayFile);
+    		matchers.add(foldCase ? createFoldedAutomaton(overlay) : overlay);
     	}
-        System.out.println("Loaded " + bricsAutomata + " brics automata.");
     }
     
-    public static List<RunAutomaton> createAutomata(Collection<String> chemicals, int termsPerAutomaton) {
-    	List<RunAutomaton> result = new ArrayList<RunAutomaton>();
+    /**
+     * @return whether the term is an entry of any of the automata
+     */
+    public boolean contains(String term) {
+    	for (RunAutomaton automaton : matchers) {
+    		if (automaton.run(term)) {
+    			return true;
+    		}
+    	}
+    	return false;
+    }
+    
+    /**
+     * @return the entries of all automata, e.g. to build another {@link DictionaryMatcher} from them. Entries
+     * of more than one automaton are contained more than once. The entries of a case-insensitive automaton are
+     * its lower case entries.
+     */
+    public List<String> getEntries() {
+    	List<String> entries = new ArrayList<String>();
+    	for (RunAutomaton automaton : matchers) {
+    		if (automaton instanceof NumberedAutomaton && ((NumberedAutomaton) automaton).hasEntryNumbers()) {
+    			// case-insensitive automata can only be listed by entry number, see collectStrings
+    			NumberedAutomaton numbering = (NumberedAutomaton) automaton;
+    			for (int number = 0; number < numbering.getNumberOfEntries(); number++) {
+    				entries.add(numbering.getEntry(number));
+    			}
+    		} else {
+    			collectStrings(automaton, entries);
+    		}
+    	}
+    	return entries;
+    }
+    
+    /**
+     * @return the file in which the merged automaton of a zipped dictionary is stored in the mapped format
+     */
+    public static File getMappedAutomatonFile(File zippedDictionary) {
+    	return getMappedAutomatonFile(zippedDictionary, false);
+    }
+    
+    /**
+     * @return the file in which the merged (case-insensitive) automaton of a zipped dictionary is stored in the mapped format
+     */
+    public static File getMappedAutomatonFile(File zippedDictionary, boolean foldCase) {
+    	return new File(zippedDictionary.getPath().replaceFirst("\\.zip$", "") + (foldCase ? FOLDED_SUFFIX : "") + MAPPED_AUTOMATON_SUFFIX);
+    }
+    
+    /**
+     * @return the overlay files of a zipped dictionary in the order in which they were added
+     */
+    public static List<File> getOverlayFiles(File zippedDictionary) {
+    	return new ArrayList<File>(getOverlays(zippedDictionary).values());
+    }
+    
+    private static SortedMap<Integer, File> getOverlays(File zippedDictionary) {
+    	SortedMap<Integer, File> overlays = new TreeMap<Integer, File>();
+    	File prefix = new File(zippedDictionary.getPath().replaceFirst("\\.zip$", ""));
+    	File directory = prefix.getAbsoluteFile().getParentFile();
+    	Pattern overlayFileName = Pattern.compile(Pattern.quote(prefix.getName() + OVERLAY_INFIX) + "([0-9]+)" + Pattern.quote(MAPPED_AUTOMATON_SUFFIX));
+    	File[] files = directory != null ? directory.listFiles() : null;
+    	if (files != null) {
+    		for (File file : files) {
+    			Matcher matcher = overlayFileName.matcher(file.getName());
+    			if (matcher.matches()) {
+    				overlays.put(Integer.valueOf(matcher.group(1)), file);
+    			}
+    		}
+    	}
+    	return overlays;
+    }
+    
+    /**
+     * Stores new entries of a zipped dictionary as an overlay, i.e. a small mapped automaton next to the zip file that
+     * is matched alongside the dictionary (see {@link #BricsMatcher(String, boolean)}). Adding entries therefore neither
+     * rebuilds nor replaces the dictionary itself. Overlays are merged into the dictionary by
+     * {@link DictionaryUpdater#compactDictionary(File)}.
+     * @param zippedDictionary the dictionary
+     * @param chemicals the new entries
+     * @return the overlay file
+     */
+    public static File addOverlay(File zippedDictionary, Collection<String> chemicals) throws IOException {
+    	SortedMap<Integer, File> overlays = getOverlays(zippedDictionary);
+    	int number = overlays.isEmpty() ? 1 : overlays.lastKey() + 1;
+    	File overlayFile = new File(zippedDictionary.getPath().replaceFirst("\\.zip$", "") + OVERLAY_INFIX + number + MAPPED_AUTOMATON_SUFFIX);
+    	if (!storeMappedAutomaton(createCompressedAutomaton(chemicals), overlayFile)) {
+    		throw new IOException("could not write overlay " + overlayFile);
+    	}
+    	return overlayFile;
+    }
+    
+    /**
+     * Builds a single numbered dictionary automaton (see {@link NumberedAutomaton}) for the chemicals of an ids file
+     * and caches it next to the ids file in the mapped format. The cache file is named after an MD5 hash of the
+     * content of the ids file and the number of chemicals, so later starts with the same ids only map the cached
+     * automaton, while changed ids lead to a new automaton. Cached automata of previous versions of the ids file
+     * are deleted. Case-insensitive automata are cached in separate files, so both variants can be cached at once.
+     * @param chemicals the dictionary entries, i.e. the chemicals of the ids file
+     * @param idsFile the ids file the chemicals were read from
+     * @param foldCase whether the automaton should ignore case (see {@link CompressedRunAutomaton#foldCase()})
+     * @return the mapped automaton, or the built automaton if it could not be cached
+     */
+    public static RunAutomaton loadCachedAutomaton(Collection<String> chemicals, File idsFile, boolean foldCase) throws IOException {
+    	return loadCachedAutomaton(chemicals, idsFile, getCacheHash(chemicals, idsFile, foldCase), foldCase);
+    }
+    
+    /**
+     * @return the hash naming the files cached for the chemicals of an ids file (see {@link #loadCachedAutomaton(Collection, File, boolean)})
+     */
+    public static String getCacheHash(Collection<String> chemicals, File idsFile, boolean foldCase) throws IOException {
+    	// the chemicals read from the same file differ if e.g. the normalizer is disabled, so their number is part of the key
+    	return getContentHash(idsFile, chemicals.size() + (foldCase ? FOLDED_SUFFIX : ""));
+    }
+    
+    /**
+     * Like {@link #loadCachedAutomaton(Collection, File, boolean)} with a hash computed by
+     * {@link #getCacheHash(Collection, File, boolean)} before.
+     */
+    public static RunAutomaton loadCachedAutomaton(Collection<String> chemicals, File idsFile, String hash, boolean foldCase) throws IOException {
+    	File cacheFile = getCachedAutomatonFile(idsFile, hash, foldCase);
+    	if (cacheFile.exists()) {
+    		MappedRunAutomaton automaton = MappedRunAutomaton.load(cacheFile);
+    		// automata cached before entry numbers were stored are rebuilt
+    		if (automaton.hasEntryNumbers()) {
+    			System.out.println("Mapped cached brics automaton " + cacheFile + ".");
+    			return automaton;
+    		}
+    	}
     	
-    	int count = 0;
-    	int total = 0;
-    	List<String> terms = new ArrayList<String>();
-    	for (String chemical : chemicals) {
-    		terms.add(chemical);
-    		
-    		count++;
-    		total++;
-    		if (count >= termsPerAutomaton) {
-    			result.add(createAutomaton(terms));
-    			System.out.print(".");
-    			terms.clear();
-    			count = 0;
+    	System.out.print("Creating brics automaton...");
+    	CompressedRunAutomaton automaton = BricsMatcher.createCompressedAutomaton(chemicals, foldCase);
+    	System.out.println("Done.");
+    	if (storeMappedAutomaton(automaton, cacheFile)) {
+    		deleteStaleCachedFiles(idsFile, cacheFile, (foldCase ? FOLDED_SUFFIX : "") + MAPPED_AUTOMATON_SUFFIX);
+    		return MappedRunAutomaton.load(cacheFile);
+    	}
+    	return automaton;
+    }
+    
+    /**
+     * @return the file in which the automaton built from an ids file with the given content hash is cached
+     */
+    public static File getCachedAutomatonFile(File idsFile, String hash, boolean foldCase) {
+    	return getCachedFile(idsFile, hash, (foldCase ? FOLDED_SUFFIX : "") + MAPPED_AUTOMATON_SUFFIX);
+    }
+    
+    /**
+     * @return the file in which data with the given suffix built from an ids file with the given content hash is cached
+     */
+    public static File getCachedFile(File idsFile, String hash, String suffix) {
+    	return new File(getCacheFilePrefix(idsFile) + "." + hash + suffix);
+    }
+    
+    private static String getCacheFilePrefix(File idsFile) {
+    	return idsFile.getPath().replaceFirst("\\.(zip|txt|tsv)$", "");
+    }
+    
+    /**
+     * Deletes the files with the given suffix cached for other versions of an ids file than the one of {@code cacheFile}.
+     */
+    public static void deleteStaleCachedFiles(File idsFile, File cacheFile, String suffix) {
+    	File prefix = new File(getCacheFilePrefix(idsFile));
+    	File directory = prefix.getAbsoluteFile().getParentFile();
+    	Pattern cacheFileName = Pattern.compile(Pattern.quote(prefix.getName()) + "\\.[0-9a-f]{32}" + Pattern.quote(suffix));
+    	File[] files = directory != null ? directory.listFiles() : null;
+    	if (files == null) {
+    		return;
+    	}
+    	for (File file : files) {
+    		if (cacheFileName.matcher(file.getName()).matches() && !file.getName().equals(cacheFile.getName()) && file.delete()) {
+    			System.out.println("Deleted outdated cache file " + file);
     		}
     	}
+    }
+    
+    /**
+     * @return the hex encoded MD5 hash of the content of a file followed by the given key
+     */
+    public static String getContentHash(File file, String key) throws IOException {
+    	MessageDigest digest;
+    	try {
+    		digest = MessageDigest.getInstance("MD5");
+    	} catch (NoSuchAlgorithmException e) {
+    		throw new IOException(e);
+    	}
     	
-    	if (!terms.isEmpty()) {
-    		result.add(createAutomaton(terms));
-    		System.out.println(" Done.");
-			terms.clear();
-			count = 0;
+    	InputStream in = new FileInputStream(file);
+    	try {
+    		byte[] buffer = new byte[1 << 16];
+    		int read = in.read(buffer);
+    		while (read != -1) {
+    			digest.update(buffer, 0, read);
+    			read = in.read(buffer);
+    		}
+    	} finally {
+    		in.close();
+    	}
+    	digest.update(key.getBytes("UTF-8"));
+    	return String.format("%032x", new BigInteger(1, digest.digest()));
+    }
+    
+    /**
+     * Writes an automaton in the mapped format. A temporary file is renamed at the end so that other
+     * processes never map a partially written file.
+     * @return {@code true} if the automaton was written
+     */
+    public static boolean storeMappedAutomaton(RunAutomaton automaton, File mappedFile) {
+    	File tempFile = new File(mappedFile.getPath() + ".tmp");
+    	try {
+    		System.out.print("Writing brics automaton to " + mappedFile + "...");
+    		MappedRunAutomaton.store(automaton, tempFile);
+    		if (mappedFile.exists() && !mappedFile.delete() || !tempFile.renameTo(mappedFile)) {
+    			throw new IOException("could not rename " + tempFile + " to " + mappedFile);
+    		}
+    		System.out.println("Done.");
+    		return true;
+    	} catch (IOException e) {
+    		System.out.println("Failed (" + e.getMessage() + "). Dictionary will be loaded from scratch next time.");
+    		tempFile.delete();
+    		return false;
     	}
+    }
+    
+    private static CompressedRunAutomaton loadZippedAutomata(File zippedDictionary, boolean foldCase) throws IOException, ClassNotFoundException {
+        final ZipFile zipFile = new ZipFile(zippedDictionary);
+        List<? extends ZipEntry> entries = Collections.list(zipFile.entries());
+        List<String> chemicals = new ArrayList<String>();
+        try {
+        	// each entry is deserialized and enumerated independently
+        	List<Callable<List<String>>> tasks = new ArrayList<Callable<List<String>>>();
+	        for (final ZipEntry entry : entries) {
+	        	tasks.add(new Callable<List<String>>() {
+					public List<String> call() throws Exception {
+						InputStream in = zipFile.getInputStream(entry);
+						RunAutomaton automaton = null;
+						try {
+							automaton = RunAutomaton.load(in);
+						} finally {
+							in.close();
+						}
+						List<String> result = new ArrayList<String>();
+						collectStrings(automaton, result);
+						return result;
+					}
+				});
+	        }
+	        for (List<String> entryChemicals : DictionaryTasks.invokeAll(tasks, "Loading brics automata")) {
+	        	chemicals.addAll(entryChemicals);
+	        }
+        } finally {
+        	zipFile.close();
+        }
+        System.out.print("Merging " + entries.size() + " brics automata...");
+        CompressedRunAutomaton result = createCompressedAutomaton(chemicals, foldCase);
+        System.out.println("Done.");
+        return result;
+    }
+    
+    /**
+     * Builds one automaton per batch of {@code termsPerAutomaton} chemicals. The batches are built in parallel, with
+     * at most twice as many batches in memory as there are threads.
+     */
+    public static List<RunAutomaton> createAutomata(Collection<String> chemicals, int termsPerAutomaton) throws IOException, ClassNotFoundException {
+    	Iterator<Callable<RunAutomaton>> tasks = new DictionaryTasks.BatchTaskIterator<RunAutomaton>(chemicals.iterator(), termsPerAutomaton) {
+			@Override
+			protected RunAutomaton process(List<String> batch, int batchNumber) {
+				return createAutomaton(batch);
+			}
+		};
     	
-    	return result;
+    	return DictionaryTasks.invokeAll(tasks, DictionaryTasks.getNumberOfBatches(chemicals.size(), termsPerAutomaton),
+    			"Creating brics automata", 2 * DictionaryTasks.getParallelism());
     }
     
     public static RunAutomaton createAutomaton(Collection<String> chemicals) {
@@ -144,51 +441,251 @@ public class BricsMatcher {
 		
 		return runAutomaton;
     }
+    
+    /**
+     * Builds one compressed automaton for an arbitrarily large collection of chemicals without splitting it
+     * into pieces of {@link #DEFAULT_TERMS_PER_AUTOMATON} terms.
+     * @param chemicals the dictionary entries (may contain duplicates)
+     * @return a compressed automaton accepting exactly the given chemicals
+     */
+    public static CompressedRunAutomaton createCompressedAutomaton(Collection<String> chemicals) {
+    	return createCompressedAutomaton(chemicals, false);
+    }
+    
+    /**
+     * Builds one compressed automaton like {@link #createCompressedAutomaton(Collection)}, optionally from the
+     * lower case variants of the chemicals and ignoring case when matching.
+     */
+    public static CompressedRunAutomaton createCompressedAutomaton(Collection<String> chemicals, boolean foldCase) {
+    	String[] sortedArray = chemicals.toArray(new String[chemicals.size()]);
+    	if (foldCase) {
+    		for (int i = 0; i < sortedArray.length; i++) {
+    			sortedArray[i] = foldCase(sortedArray[i]);
+    		}
+    	}
+    	DictionaryTasks.sort(sortedArray, StringUnionOperations.LEXICOGRAPHIC_ORDER);
+		
+		// remove duplicates, e.g. terms contained in more than one dictionary piece
+		int unique = 0;
+		for (int i = 0; i < sortedArray.length; i++) {
+			if (unique == 0 || !sortedArray[i].equals(sortedArray[unique - 1])) {
+				sortedArray[unique++] = sortedArray[i];
+			}
+		}
+		if (unique < sortedArray.length) {
+			sortedArray = Arrays.copyOf(sortedArray, unique);
+		}
+		
+		Automaton automaton = new Automaton();
+		automaton.setInitialState(StringUnionOperations.build(sortedArray));
+		automaton.setDeterministic(true);
+		sortedArray = null;
+		
+		CompressedRunAutomaton result = new CompressedRunAutomaton(automaton);
+		if (foldCase) {
+			result.foldCase();
+		}
+		return result;
+    }
+    
+    /**
+     * @return a case-insensitive automaton accepting the entries of a (case-sensitive) dictionary automaton
+     */
+    public static CompressedRunAutomaton createFoldedAutomaton(RunAutomaton automaton) {
+    	List<String> chemicals = new ArrayList<String>();
+    	collectStrings(automaton, chemicals);
+    	return createCompressedAutomaton(chemicals, true);
+    }
+    
+    /**
+     * @return the string with every character replaced by {@link Character#toLowerCase(char)}, which matches the
+     * folding of {@link CompressedRunAutomaton#foldCase()} (unlike {@link String#toLowerCase()} it never changes the length)
+     */
+    public static String foldCase(String s) {
+    	char[] chars = null;
+    	for (int i = 0; i < s.length(); i++) {
+    		char lowerCase = Character.toLowerCase(s.charAt(i));
+    		if (lowerCase != s.charAt(i)) {
+    			if (chars == null) {
+    				chars = s.toCharArray();
+    			}
+    			chars[i] = lowerCase;
+    		}
+    	}
+    	return chars == null ? s : new String(chars);
+    }
+    
+    /**
+     * Adds all strings accepted by an (acyclic) dictionary automaton to {@code result}.
+     * The strings are added in lexicographic order. The automaton must not ignore case (see
+     * {@link CompressedRunAutomaton#foldCase()}), as the characters of its character intervals would not lead to the
+     * same states any more.
+     * @param automaton a dictionary automaton
+     * @param result the collection to which the accepted strings are added
+     */
+    public static void collectStrings(RunAutomaton automaton, Collection<String> result) {
+    	collectStrings(automaton, automaton.getInitialState(), automaton.getCharIntervals(), new StringBuilder(), result);
+    }
+    
+    private static void collectStrings(RunAutomaton automaton, int state, char[] points, StringBuilder prefix, Collection<String> result) {
+    	if (automaton.isAccept(state)) {
+    		result.add(prefix.toString());
+    	}
+    	for (int i = 0; i < points.length; i++) {
+    		// all characters of a class lead to the same state
+    		int toState = automaton.step(state, points[i]);
+    		if (toState == -1) {
+    			continue;
+    		}
+    		int max = i + 1 < points.length ? points[i + 1] - 1 : Character.MAX_VALUE;
+    		for (int c = points[i]; c <= max; c++) {
+    			prefix.append((char) c);
+    			collectStrings(automaton, toState, points, prefix, result);
+    			prefix.setLength(prefix.length() - 1);
+    		}
+    	}
+    }
 
     /**
      * Uses the set of brics dictionary matchers to extract mentions of chemical entities in natural language text.
      * @param text Input natural language text.
      * @return a collection of Mentions.
      */
-    public Collection<Mention> match(String text) {
-        Collection<Mention> matches = new HashSet<Mention>();
-        for (RunAutomaton automat : matchers) {
-            AutomatonMatcher matcher = automat.newMatcher(text);
-            while (matcher.find()) {
-                char left = ' ';
-                char right = ' ';
-                char nright = ' ';
-                try {
-                    left = text.charAt(matcher.start() - 1);
-                } catch (ArrayIndexOutOfBoundsException e) {
-                    //ignore
-                } catch (StringIndexOutOfBoundsException e) {
-                    //ignore
-                }
-                try {
-                    right = text.charAt(matcher.end());
-                } catch (ArrayIndexOutOfBoundsException e) {
-                    //ignore
-                } catch (StringIndexOutOfBoundsException e) {
-                    //ignore
-                }
-                try {
-                    nright = text.charAt(matcher.end() + 1);
-                } catch (ArrayIndexOutOfBoundsException e) {
-                    //ignore
-                } catch (StringIndexOutOfBoundsException e) {
-                    //ignore
-                }
-                String coveredText = text.substring(matcher.start(), matcher.end());
+    public Collection<Mention> match(final String text) {
+        final Collection<Mention> matches = new HashSet<Mention>();
+        match(text, new IntMatchSink() {
+			public void match(int start, int end) {
+				matches.add(new Mention(start, end, text.substring(start, end)));
+			}
+		});
+        return matches;
+    }
 
-                //only add if not within a text and longer than two characters
-                if (coveredText.length() > 2 && !Character.isLetter(left) && 
-                		(!Character.isLetter(right) || (right == 's' && Character.isLetter(nright)))) {
-                    matches.add(new Mention(matcher.start(), matcher.end() + (right == 's' ? 1 : 0), text.substring(matcher.start(), matcher.end())));
-                }
-            }
+    /**
+     * Finds all dictionary entries in a text and reports their offsets to a sink. For each automaton, the leftmost
+     * longest matches that do not overlap each other are reported if they are longer than two characters and
+     * are not part of a longer word. Matches of different automata may overlap.
+     * @param text the text to search
+     * @param sink receives the start and (exclusive) end position of each match
+     */
+    public void match(CharSequence text, IntMatchSink sink) {
+    	int length = text.length();
+        for (RunAutomaton automaton : matchers) {
+        	int initial = automaton.getInitialState();
+        	int start = 0;
+        	while (start < length) {
+        		// find the longest match beginning at start
+        		int end = -1;
+        		int state = initial;
+        		for (int i = start; i < length; i++) {
+        			state = automaton.step(state, text.charAt(i));
+        			if (state == -1) {
+        				break;
+        			}
+        			if (automaton.isAccept(state)) {
+        				end = i + 1;
+        			}
+        		}
+        		if (end == -1) {
+        			start++;
+        			continue;
+        		}
+
+        		int mentionEnd = getMentionEnd(text, start, end);
+        		if (mentionEnd != -1 && isLeftBoundary(text, start)) {
+        			sink.match(start, mentionEnd);
+        		}
+        		start = end;
+        	}
         }
-        return matches;
+    }
+
+    /**
+     * Finds all dictionary entries in a text with leftmost-longest semantics over all automata: scanning from left
+     * to right, the longest entry starting at a word boundary that is longer than two characters and not part of a
+     * longer word is reported, and scanning continues after its end. The reported matches are therefore sorted
+     * by start position and never overlap.
+     * @param text the text to search
+     * @param sink receives the start and (exclusive) end position of each match
+     */
+    public void matchLeftmostLongest(CharSequence text, IntMatchSink sink) {
+    	matchLeftmostLongest(text, Boundary.WORD, null, sink);
+    }
+
+    /**
+     * Finds all dictionary entries in a text with leftmost-longest semantics over all automata. The boundary mode
+     * decides at which positions the automata are started and at which positions they may accept.
+     * @param text the text to search
+     * @param boundary the boundary mode
+     * @param tokenBoundaries the begin and end positions of all tokens, only used with {@link Boundary#TOKEN}
+     * @param sink receives the start and (exclusive) end position of each match
+     */
+    public void matchLeftmostLongest(CharSequence text, Boundary boundary, BitSet tokenBoundaries, IntMatchSink sink) {
+    	if (boundary == Boundary.TOKEN && tokenBoundaries == null) {
+    		throw new IllegalArgumentException("token boundaries are required for boundary mode " + boundary);
+    	}
+
+    	int length = text.length();
+    	int start = boundary == Boundary.TOKEN ? tokenBoundaries.nextSetBit(0) : 0;
+    	while (start != -1 && start < length) {
+    		int next = -1;
+    		int longest = -1;
+    		if (boundary == Boundary.CHARACTER || isLeftBoundary(text, start)) {
+    			for (RunAutomaton automaton : matchers) {
+    				int state = automaton.getInitialState();
+    				for (int i = start; i < length; i++) {
+    					state = automaton.step(state, text.charAt(i));
+    					if (state == -1) {
+    						break;
+    					}
+    					if (i + 1 > next && automaton.isAccept(state)) {
+    						if (boundary == Boundary.CHARACTER) {
+    							// like match(): only the longest entry is checked against the word boundaries
+    							next = i + 1;
+    						} else if (boundary == Boundary.WORD || tokenBoundaries.get(i + 1)) {
+    							int mentionEnd = getMentionEnd(text, start, i + 1);
+    							if (mentionEnd != -1) {
+    								next = i + 1;
+    								longest = mentionEnd;
+    							}
+    						}
+    					}
+    				}
+    			}
+    			if (boundary == Boundary.CHARACTER && next != -1 && isLeftBoundary(text, start)) {
+    				longest = getMentionEnd(text, start, next);
+    			}
+    		}
+
+    		if (longest != -1) {
+    			sink.match(start, longest);
+    			next = longest;
+    		}
+    		if (next == -1) {
+    			next = start + 1;
+    		}
+    		start = boundary == Boundary.TOKEN ? tokenBoundaries.nextSetBit(next) : next;
+    	}
+    }
+
+    static boolean isLeftBoundary(CharSequence text, int start) {
+    	return start == 0 || !Character.isLetter(text.charAt(start - 1));
+    }
+
+    /**
+     * @return the end of the mention for a match ending at {@code end}, including a directly following 's'
+     * if the text continues with a letter, or -1 if the match is too short or part of a longer word
+     */
+    static int getMentionEnd(CharSequence text, int start, int end) {
+    	if (end - start <= 2) {
+    		return -1;
+    	}
+    	char right = end < text.length() ? text.charAt(end) : ' ';
+    	if (!Character.isLetter(right)) {
+    		return end;
+    	}
+    	char nright = end + 1 < text.length() ? text.charAt(end + 1) : ' ';
+    	return right == 's' && Character.isLetter(nright) ? end + 1 : -1;
     }
 
 	static class StatePair {
@@ -12,8 +12,9 @@
 
 package de.berlin.hu.uima.ae.tagger.brics;
 
-import de.berlin.hu.chemspot.Mention;
+import de.berlin.hu.uima.ae.normalizer.IdTable;
 import de.berlin.hu.uima.ae.normalizer.Normalizer;
+import de.berlin.hu.uima.ae.tagger.DeferredTagging;
 import de.berlin.hu.util.Constants;
 import de.berlin.hu.util.Constants.ChemicalType;
 
@@ -23,13 +24,16 @@ import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
 import org.apache.uima.jcas.JCas;
 import org.apache.uima.resource.ResourceInitializationException;
 import org.u_compare.shared.semantic.Chemical;
+import org.u_compare.shared.syntactic.Token;
 import org.uimafit.util.JCasUtil;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.util.*;
+import java.util.concurrent.Callable;
 
 /**
  * User: Tim Rocktaeschel
@@ -39,14 +43,54 @@ import java.util.*;
 public class BricsTagger extends JCasAnnotator_ImplBase {
 	public static final String PATH_TO_DICTIONARY = "DrugBankMatcherDictionaryAutomat";
 	public static final String IDS = "Ids";
+	public static final String LEFTMOST_LONGEST = "LeftmostLongest";
+	public static final String BOUNDARY = "Boundary";
+	public static final String CASE_INSENSITIVE = "CaseInsensitive";
+	public static final String ENGINE = "Engine";
+
+	/**
+	 * The data structures that can hold the dictionary (see {@link DictionaryMatcher}).
+	 */
+	public static enum Engine {BRICS, TRIE};
+
     //list of invalid suffixes taken from Hettne et al. (2009)
+	//matchers by engine, case folding and dictionary, shared by all taggers as matching only reads them
+	private static final Map<String, DictionaryMatcher> sharedMatchers = new HashMap<String, DictionaryMatcher>();
+
 	private Set<String> suffixes; //FIXME: implement another AE for that
-	private BricsMatcher matcher;
+	private DictionaryMatcher matcher;
+	private boolean leftmostLongest = false;
+	private DictionaryMatcher.Boundary boundary = DictionaryMatcher.Boundary.CHARACTER;
+	private boolean warnedAboutMissingTokens = false;
+	private boolean caseInsensitive = false;
+	private Engine engine = Engine.BRICS;
+	private final BitSet tokenBoundaries = new BitSet();
+	private final IntMatchBuffer matches = new IntMatchBuffer();
 
 	@Override
 	public void initialize(UimaContext aContext) throws ResourceInitializationException {
 		super.initialize(aContext);
 		suffixes = new HashSet<String>();
+		if (aContext.getConfigParameterValue(LEFTMOST_LONGEST) != null) {
+			leftmostLongest = (Boolean) aContext.getConfigParameterValue(LEFTMOST_LONGEST);
+		}
+		if (aContext.getConfigParameterValue(CASE_INSENSITIVE) != null) {
+			caseInsensitive = (Boolean) aContext.getConfigParameterValue(CASE_INSENSITIVE);
+		}
+		if (aContext.getConfigParameterValue(BOUNDARY) != null) {
+			try {
+				boundary = DictionaryMatcher.Boundary.valueOf(aContext.getConfigParameterValue(BOUNDARY).toString().trim().toUpperCase());
+			} catch (IllegalArgumentException e) {
+				throw new ResourceInitializationException(e);
+			}
+		}
+		if (aContext.getConfigParameterValue(ENGINE) != null) {
+			try {
+				engine = Engine.valueOf(aContext.getConfigParameterValue(ENGINE).toString().trim().toUpperCase());
+			} catch (IllegalArgumentException e) {
+				throw new ResourceInitializationException(e);
+			}
+		}
 
 		if (aContext.getConfigParameterValue(PATH_TO_DICTIONARY) != null && !aContext.getConfigParameterValue(PATH_TO_DICTIONARY).toString().isEmpty()) {
 			try {
@@ -56,7 +100,15 @@ public class BricsTagger extends JCasAnnotator_ImplBase {
 					suffixes.add(line);
 					line = reader.readLine();
 				}
-				matcher = new BricsMatcher(aContext.getConfigParameterValue(PATH_TO_DICTIONARY).toString());
+				String pathToDictionary = aContext.getConfigParameterValue(PATH_TO_DICTIONARY).toString();
+				synchronized (sharedMatchers) {
+					String key = engine + " " + caseInsensitive + " " + pathToDictionary;
+					matcher = sharedMatchers.get(key);
+					if (matcher == null) {
+						matcher = createMatcher(new BricsMatcher(pathToDictionary, caseInsensitive), caseInsensitive);
+						sharedMatchers.put(key, matcher);
+					}
+				}
 			} catch (FileNotFoundException e) {
 				throw new ResourceInitializationException(e);
 			} catch (IOException e) {
@@ -66,7 +118,23 @@ public class BricsTagger extends JCasAnnotator_ImplBase {
 	        }
 		} else if (Normalizer.getIds() != null) {
 			try {
-				matcher = new BricsMatcher();
+				Object idsFile = aContext.getConfigParameterValue(IDS);
+				synchronized (sharedMatchers) {
+					String key = engine + " " + caseInsensitive + " ids " + System.identityHashCode(Normalizer.getIds());
+					matcher = sharedMatchers.get(key);
+					if (matcher == null) {
+						if (caseInsensitive && Normalizer.getIds() instanceof IdTable) {
+							//the automaton of an id table ignores case, so it is only used if the tagger should ignore case too
+							matcher = createMatcher(new BricsMatcher(), true);
+						} else if (idsFile != null && !idsFile.toString().isEmpty() && new File(idsFile.toString()).isFile()) {
+							//reuse the case-sensitive automaton built for the same ids on a previous start
+							matcher = createMatcher(new BricsMatcher(Normalizer.getIds().keySet(), new File(idsFile.toString())), caseInsensitive);
+						} else {
+							matcher = createMatcher(new BricsMatcher(Normalizer.getIds().keySet()), caseInsensitive);
+						}
+						sharedMatchers.put(key, matcher);
+					}
+				}
 			} catch (IOException e) {
 				throw new ResourceInitializationException(e);
 			} catch (ClassNotFoundException e) {
@@ -75,6 +143,19 @@ public class BricsTagger extends JCasAnnotator_ImplBase {
 		}
     }
 
+	/**
+	 * Returns the brics matcher itself or converts its entries into the configured engine.
+	 */
+	private DictionaryMatcher createMatcher(BricsMatcher bricsMatcher, boolean foldCase) {
+		if (engine == Engine.TRIE) {
+			System.out.print("Creating double-array trie...");
+			DoubleArrayTrieMatcher trie = new DoubleArrayTrieMatcher(bricsMatcher.getEntries(), foldCase);
+			System.out.println("Done.");
+			return trie;
+		}
+		return bricsMatcher;
+	}
+
 /*    @Override
     public void process(JCas jCas) throws AnalysisEngineProcessException {
         String docText = jCas.getDocumentText();
@@ -92,53 +173,110 @@ public class BricsTagger extends JCasAnnotator_ImplBase {
 
     @Override
    	public void process(JCas aJCas) throws AnalysisEngineProcessException {
-   		String docText = aJCas.getDocumentText();
-   		List<Mention> matches = new ArrayList<Mention>();
-
-   		try {
-   			long start = System.currentTimeMillis();
-   			matches = new ArrayList<Mention>(matcher.match(docText));
-   			long time = System.currentTimeMillis() - start;
-
-   		} catch (Error e) {
-   			throw new AnalysisEngineProcessException(e);
-   		} catch (IllegalStateException e) {
-               if (e.toString().contains("Automaton matched the empty string")); //FIXME: What goes wrong here?
-               else throw new AnalysisEngineProcessException(e);
+   		final String docText = aJCas.getDocumentText();
+   		//the tokens are read here, as only this thread may read the CAS
+   		final boolean hasTokens = leftmostLongest && boundary == DictionaryMatcher.Boundary.TOKEN && setTokenBoundaries(aJCas);
+
+   		DeferredTagging.run(aJCas, new Callable<DeferredTagging.Result>() {
+   			public DeferredTagging.Result call() {
+   				match(docText, hasTokens);
+   				return new DeferredTagging.Result() {
+   					public void addTo(JCas aJCas) {
+   						addMatches(aJCas, docText);
+   					}
+   				};
+   			}
+   		});
+   	}
+
+   	/**
+   	 * Finds the dictionary matches of a text, sorted by start position unless they are leftmost-longest.
+   	 * @param hasTokens whether the token boundaries were set
+   	 */
+   	private void match(String docText, boolean hasTokens) {
+   		matches.clear();
+   		if (!leftmostLongest) {
+   			//collect and sort mentions by start position, longer ones first
+   			matcher.match(docText, matches);
+   			matches.sort();
+   		} else if (hasTokens) {
+   			matcher.matchLeftmostLongest(docText, boundary, tokenBoundaries, matches);
+   		} else {
+   			//without tokens, token boundaries fall back to word boundaries
+   			if (boundary == DictionaryMatcher.Boundary.TOKEN && !warnedAboutMissingTokens) {
+   				System.err.println("WARNING: dictionary boundary TOKEN requires tokens, but the document has none. Matching at word boundaries instead...");
+   				warnedAboutMissingTokens = true;
+   			}
+   			matcher.matchLeftmostLongest(docText, boundary == DictionaryMatcher.Boundary.TOKEN ? DictionaryMatcher.Boundary.WORD : boundary, null, matches);
    		}
+   	}
 
-   		Comparator<Mention> comp = new Comparator<Mention>() {
-   			public int compare(Mention m1, Mention m2) {
-   				return m1.getStart() - m2.getStart();
+   	/**
+   	 * Creates the chemicals of the matches found by {@link #match(String, boolean)}.
+   	 */
+   	private void addMatches(JCas aJCas, String docText) {
+   		if (leftmostLongest) {
+   			//matches are sorted and do not overlap, so every mention passing the filter is kept
+   			Chemical lastDrug = null;
+   			for (int i = 0; i < matches.size(); i++) {
+   				if (!filter(docText, matches.getStart(i), matches.getEnd(i))) {
+   					lastDrug = processMention(aJCas, docText, lastDrug, matches.getStart(i), matches.getEnd(i), "");
+   				}
    			}
-   		};
+   			return;
+   		}
 
-   		//sort mentions by start position
-   		Collections.sort(matches, comp);
-   		Mention lastMention = null;
+   		int lastStart = -1;
+   		int lastEnd = -1;
    		Chemical lastDrug = null;
 
-   		for (Mention mention : matches) {
-   			int begin = mention.getStart();
-   			int end = mention.getEnd();
-   			//String id = mention.getIdsToString();
+   		for (int i = 0; i < matches.size(); i++) {
+   			int begin = matches.getStart(i);
+   			int end = matches.getEnd(i);
    			String id = "";
 
    			//filter mentions
-   			if (!filter(mention)) {
+   			if (!filter(docText, begin, end)) {
    				//only keep mention if it is not included in the previous one
-   				if (!overlaps(lastMention, mention)) {
-   					if (overlaps(mention, lastMention)) {
+   				if (!(lastStart <= begin && end <= lastEnd)) {
+   					if (lastStart != -1 && begin <= lastStart && lastEnd <= end) {
    						lastDrug.removeFromIndexes();
-   						lastMention = null;
    					}
    					lastDrug = processMention(aJCas, docText, lastDrug, begin, end, id);
    				}
-   				lastMention = mention;
+   				lastStart = begin;
+   				lastEnd = end;
    			}
    		}
 
+   		removeCrossingChemicals(aJCas);
+   	}
+
+   	/**
+   	 * Tests whether a part of a text matches {@code \\[a-zA-Z]} without creating a substring.
+   	 */
+   	private static boolean isBracketedLetter(String text, int begin, int end) {
+   		if (end - begin != 2 || text.charAt(begin) != '[') {
+   			return false;
+   		}
+   		char c = text.charAt(begin + 1);
+   		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+   	}
+
+   	/**
+   	 * Collects the begin and end positions of all tokens of a document.
+   	 * @return false if the document has no tokens
+   	 */
+   	private boolean setTokenBoundaries(JCas aJCas) {
+   		tokenBoundaries.clear();
+   		for (Token token : JCasUtil.select(aJCas, Token.class)) {
+   			tokenBoundaries.set(token.getBegin());
+   			tokenBoundaries.set(token.getEnd());
+   		}
+   		return !tokenBoundaries.isEmpty();
+   	}
 
+   	private void removeCrossingChemicals(JCas aJCas) {
    		//test whether overlaps were resolved correctly!
    		Comparator<Chemical> comp2 = new Comparator<Chemical>() {
    			public int compare(Chemical m1, Chemical m2) {
@@ -189,7 +327,8 @@ public class BricsTagger extends JCasAnnotator_ImplBase {
    		}
 
    		//remove erroneous last character
-   		if ((docText.charAt(end-1)+"").matches("[.,;:]")) {
+   		char last = docText.charAt(end-1);
+   		if (last == '.' || last == ',' || last == ';' || last == ':') {
    			end--;
    		}
 
@@ -253,9 +392,8 @@ public class BricsTagger extends JCasAnnotator_ImplBase {
    			end--;
    		}
 
-   		String mentionText = docText.substring(begin, end);
    		for (String suffix : suffixes) {
-   			if (mentionText.endsWith(suffix)) {
+   			if (suffix.length() <= end - begin && docText.startsWith(suffix, end - suffix.length())) {
    				end = end - suffix.length();
    				break;
    			}
@@ -278,7 +416,7 @@ public class BricsTagger extends JCasAnnotator_ImplBase {
         //ID is set by normalizer
         drug.setId("");
    		drug.setSource(Constants.DICTIONARY);
-   		drug.setEntityType(aJCas.getDocumentText().substring(begin, end).matches("\\[a-zA-Z]") ? ChemicalType.TRIVIAL.toString() : ChemicalType.SYSTEMATIC.toString());
+   		drug.setEntityType(isBracketedLetter(aJCas.getDocumentText(), begin, end) ? ChemicalType.TRIVIAL.toString() : ChemicalType.SYSTEMATIC.toString());
    		drug.addToIndexes();
    		return drug;
    	}
@@ -309,28 +447,36 @@ public class BricsTagger extends JCasAnnotator_ImplBase {
    	}
 
 
-   	private boolean filter(Mention mention) {
+   	private boolean filter(String docText, int start, int end) {
    		//forget about ambiguous one or two letter entities
-   		if (mention.getEnd() - mention.getStart() < 3) {
+   		if (end - start < 3) {
    			return true;
    		}
 
    		//test if it is a real number only
-   		if (mention.getText().matches("[-0-9]+[.,]+[0-9.,]+|[0-9,]+")) {
-   			return true;
-   		}
-   		return false;
+   		return isNumber(docText, start, end);
    	}
 
-   	private boolean overlaps(Mention lastMention, Mention mention) {
-   		if (lastMention == null || mention == null) {
-   			return false;
-   		}
-
-   		if (lastMention.getStart() <= mention.getStart() && mention.getEnd() <= lastMention.getEnd()) {
-   			return true;
-   		} else {
-   			return false;
+   	/**
+   	 * Tests whether a part of a text matches {@code [-0-9]+[.,]+[0-9.,]+|[0-9,]+} without creating a substring.
+   	 */
+   	static boolean isNumber(CharSequence text, int start, int end) {
+   		boolean digitsAndCommasOnly = true;
+   		int separator = -1;
+   		for (int i = start; i < end; i++) {
+   			char c = text.charAt(i);
+   			boolean digit = c >= '0' && c <= '9';
+   			digitsAndCommasOnly &= digit || c == ',';
+   			if (separator == -1) {
+   				if (c == '.' || c == ',') {
+   					separator = i;
+   				} else if (!digit && c != '-') {
+   					return false;
+   				}
+   			} else if (!digit && c != '.' && c != ',') {
+   				return false;
+   			}
    		}
+   		return (digitsAndCommasOnly && end > start) || (separator > start && end - separator >= 2);
    	}
 }
@@ -0,0 +1,53 @@
+package de.berlin.hu.uima.ae.tagger.brics;
+
+import java.util.BitSet;
+
+/**
+ * Finds the entries of a chemical dictionary in a text. Implementations differ only in the data structure
+ * holding the dictionary ({@link BricsMatcher}, {@link DoubleArrayTrieMatcher}) and report the same matches if the
+ * {@link BricsMatcher} holds the dictionary in a single automaton.
+ */
+public interface DictionaryMatcher {
+	/**
+	 * Positions at which dictionary matches may start and end.
+	 * <ul>
+	 * <li>CHARACTER: matching starts at every character, the longest match is then checked against the word boundaries</li>
+	 * <li>WORD: matches start only after a non-letter and end only before a non-letter (or a plural 's')</li>
+	 * <li>TOKEN: like WORD, but matches additionally have to start and end at token boundaries</li>
+	 * </ul>
+	 */
+	public static enum Boundary {CHARACTER, WORD, TOKEN};
+
+	/**
+	 * Finds all dictionary entries in a text and reports their offsets to a sink. For each automaton, the leftmost
+	 * longest matches that do not overlap each other are reported if they are longer than two characters and
+	 * are not part of a longer word. Matches of different automata may overlap; a {@link DoubleArrayTrieMatcher}
+	 * holds the whole dictionary in one trie, so its matches never overlap. Matches are not sorted.
+	 * @param text the text to search
+	 * @param sink receives the start and (exclusive) end position of each match
+	 */
+	void match(CharSequence text, IntMatchSink sink);
+
+	/**
+	 * Finds the leftmost longest matches with {@link Boundary#WORD} boundaries.
+	 * @see #matchLeftmostLongest(CharSequence, Boundary, BitSet, IntMatchSink)
+	 */
+	void matchLeftmostLongest(CharSequence text, IntMatchSink sink);
+
+	/**
+	 * Finds all dictionary entries in a text with leftmost-longest semantics: scanning from left to right, the
+	 * longest entry that starts and ends at a boundary, is longer than two characters and is not part of a longer
+	 * word is reported, and scanning continues after its end. The reported matches are therefore sorted by start
+	 * position and never overlap.
+	 * @param text the text to search
+	 * @param boundary the boundary mode
+	 * @param tokenBoundaries the begin and end positions of all tokens, only used with {@link Boundary#TOKEN}
+	 * @param sink receives the start and (exclusive) end position of each match
+	 */
+	void matchLeftmostLongest(CharSequence text, Boundary boundary, BitSet tokenBoundaries, IntMatchSink sink);
+
+	/**
+	 * @return whether the term is a dictionary entry
+	 */
+	boolean contains(String term);
+}
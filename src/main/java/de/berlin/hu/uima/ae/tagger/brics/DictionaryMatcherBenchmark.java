@@ -0,0 +1,141 @@
+package de.berlin.hu.uima.ae.tagger.brics;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares the {@link DictionaryMatcher} engines on a synthetic dictionary: heap used per entry, build time
+ * and the throughput of {@link DictionaryMatcher#matchLeftmostLongest(CharSequence, IntMatchSink)} on a text.
+ * Both engines are measured case-sensitive and case-insensitive; the case-insensitive trie is built from the
+ * entries of the case-insensitive automaton, like the {@link BricsTagger} does.
+ *
+ * Usage: DictionaryMatcherBenchmark [number of entries, default 2000000] [text file, default resources/sample.txt]
+ */
+public class DictionaryMatcherBenchmark {
+	private static final String[] PREFIXES = {"meth", "eth", "prop", "but", "pent", "hex", "hept", "oct", "non", "dec",
+		"benz", "phen", "chlor", "fluor", "brom", "iod", "hydroxy", "amino", "nitro", "acet", "carb", "sulf", "phosph", "cyclo"};
+	private static final String[] LOCANTS = {"", "1-", "2-", "3-", "1,2-", "1,3-", "2,4-", "N-", "N,N-"};
+	private static final String[] SUFFIXES = {"ane", "ene", "yne", "ol", "al", "one", "ic acid", "ate", "ide", "amine", "amide", "yl"};
+	private static final long MIN_SCAN_TIME = 2000000000L;
+
+	/**
+	 * @return a random chemical-like name. The names are random rather than enumerated, as the minimal automaton
+	 * of an enumeration is unrealistically small.
+	 */
+	static String getSyntheticTerm(Random random) {
+		StringBuilder term = new StringBuilder(LOCANTS[random.nextInt(LOCANTS.length)]);
+		int prefixes = 2 + random.nextInt(5);
+		for (int i = 0; i < prefixes; i++) {
+			term.append(PREFIXES[random.nextInt(PREFIXES.length)]);
+		}
+		term.append(SUFFIXES[random.nextInt(SUFFIXES.length)]);
+		if (random.nextInt(3) == 0) {
+			term.append('-').append(random.nextInt(1000));
+		}
+		return term.toString();
+	}
+
+	private static String readText(String path) throws IOException {
+		InputStream in = path != null ? new FileInputStream(path) : DictionaryMatcherBenchmark.class.getClassLoader().getResourceAsStream("resources/sample.txt");
+		if (in == null) {
+			throw new IOException("resources/sample.txt is not on the classpath");
+		}
+		StringBuilder text = new StringBuilder();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+		try {
+			String line = reader.readLine();
+			while (line != null) {
+				text.append(line).append('\n');
+				line = reader.readLine();
+			}
+		} finally {
+			reader.close();
+		}
+		return text.toString();
+	}
+
+	private static long getUsedMemory() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	private static DictionaryMatcher build(String engine, List<String> terms) throws IOException, ClassNotFoundException {
+		if (engine.equals("brics")) {
+			return new BricsMatcher(terms);
+		} else if (engine.equals("trie")) {
+			return new DoubleArrayTrieMatcher(terms);
+		}
+		BricsMatcher folded = new BricsMatcher(BricsMatcher.createCompressedAutomaton(terms, true));
+		return engine.equals("brics-ci") ? folded : new DoubleArrayTrieMatcher(folded.getEntries(), true);
+	}
+
+	public static void main(String[] args) throws IOException, ClassNotFoundException {
+		int numberOfTerms = args.length > 0 ? Integer.parseInt(args[0]) : 2000000;
+		String text = readText(args.length > 1 ? args[1] : null);
+
+		Random random = new Random(42);
+		List<String> terms = new ArrayList<String>(numberOfTerms);
+		for (int i = 0; i < numberOfTerms; i++) {
+			terms.add(getSyntheticTerm(random));
+		}
+		// the longer words of the text are added so that the scan finds matches
+		for (String word : text.split("[^\\p{L}\\p{N}\\-]+")) {
+			if (word.length() > 6) {
+				terms.add(word);
+			}
+		}
+		System.out.printf("%d entries (with duplicates), text of %d characters%n", terms.size(), text.length());
+
+		IntMatchBuffer matches = new IntMatchBuffer();
+		long checksum = -1;
+		for (String engine : new String[] {"brics", "trie", "brics-ci", "trie-ci"}) {
+			long memoryBefore = getUsedMemory();
+			long buildStart = System.nanoTime();
+			DictionaryMatcher matcher = build(engine, terms);
+			long buildTime = System.nanoTime() - buildStart;
+			long memory = getUsedMemory() - memoryBefore;
+
+			// warm up, then scan the text repeatedly for a fixed time
+			for (int i = 0; i < 100; i++) {
+				matches.clear();
+				matcher.matchLeftmostLongest(text, matches);
+			}
+			long scans = 0;
+			long scanStart = System.nanoTime();
+			long scanTime;
+			do {
+				matches.clear();
+				matcher.matchLeftmostLongest(text, matches);
+				scans++;
+				scanTime = System.nanoTime() - scanStart;
+			} while (scanTime < MIN_SCAN_TIME);
+
+			long matchChecksum = 0;
+			for (int i = 0; i < matches.size(); i++) {
+				matchChecksum = 31 * (31 * matchChecksum + matches.getStart(i)) + matches.getEnd(i);
+			}
+			// the case-insensitive engines are only compared to each other
+			if (engine.startsWith("trie") && checksum != matchChecksum) {
+				System.out.println("WARNING: the engines report different matches");
+			}
+			checksum = matchChecksum;
+
+			System.out.printf("%-8s build %6.1f s, heap %8.1f MB (%5.1f bytes/entry), scan %6.2f M chars/s, %d matches%n", engine,
+					buildTime / 1e9, memory / 1e6, (double) memory / terms.size(),
+					scans * text.length() / (scanTime / 1e3), matches.size());
+			if (matcher instanceof DoubleArrayTrieMatcher) {
+				System.out.printf("         %s (%.1f MB)%n", matcher, ((DoubleArrayTrieMatcher) matcher).getMemoryUsage() / 1e6);
+			}
+			matcher = null;
+		}
+	}
+}
@@ -0,0 +1,205 @@
+package de.berlin.hu.uima.ae.tagger.brics;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the independent steps of loading and building dictionary automata (one per zip entry or term batch)
+ * in parallel on a fork-join pool.
+ */
+public class DictionaryTasks {
+	private static final int SORT_THRESHOLD = 1 << 13;
+
+	/**
+	 * @return the number of tasks that are run in parallel
+	 */
+	public static int getParallelism() {
+		return Runtime.getRuntime().availableProcessors();
+	}
+
+	/**
+	 * Runs all tasks on a fork-join pool and returns their results in the order of the tasks. At most
+	 * {@code maxPending} tasks are created, running or waiting for their result to be collected at any time,
+	 * so that the iterator can create its tasks (e.g. term batches) lazily and only a bounded number
+	 * of them is held in memory at once.
+	 * @param tasks the tasks to run
+	 * @param total the number of tasks, used for progress reporting
+	 * @param message the progress message
+	 * @param maxPending the maximum number of tasks in memory at once
+	 * @return the results of all tasks in order
+	 * @throws IOException if a task threw an IOException
+	 * @throws ClassNotFoundException if a task threw a ClassNotFoundException
+	 */
+	public static <T> List<T> invokeAll(Iterator<Callable<T>> tasks, final int total, final String message, int maxPending) throws IOException, ClassNotFoundException {
+		List<T> results = new ArrayList<T>();
+		LinkedList<ForkJoinTask<T>> pending = new LinkedList<ForkJoinTask<T>>();
+		final AtomicInteger finished = new AtomicInteger();
+
+		ForkJoinPool pool = new ForkJoinPool(getParallelism());
+		try {
+			System.out.printf("\r%s... 0 / %d", message, total);
+			while (tasks.hasNext()) {
+				if (pending.size() >= maxPending) {
+					results.add(get(pending.removeFirst()));
+				}
+				final Callable<T> task = tasks.next();
+				pending.add(pool.submit(new Callable<T>() {
+					public T call() throws Exception {
+						T result = task.call();
+						System.out.printf("\r%s... %d / %d", message, finished.incrementAndGet(), total);
+						return result;
+					}
+				}));
+			}
+			while (!pending.isEmpty()) {
+				results.add(get(pending.removeFirst()));
+			}
+			System.out.printf("\r%s... Done.%n", message);
+		} finally {
+			for (ForkJoinTask<T> task : pending) {
+				task.cancel(true);
+			}
+			pool.shutdown();
+		}
+
+		return results;
+	}
+
+	public static <T> List<T> invokeAll(List<Callable<T>> tasks, String message) throws IOException, ClassNotFoundException {
+		return invokeAll(tasks.iterator(), tasks.size(), message, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * @return the number of batches of {@code batchSize} terms needed for {@code terms} terms
+	 */
+	public static int getNumberOfBatches(int terms, int batchSize) {
+		return (terms + batchSize - 1) / batchSize;
+	}
+
+	private static <T> T get(ForkJoinTask<T> task) throws IOException, ClassNotFoundException {
+		try {
+			return task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			} else if (cause instanceof ClassNotFoundException) {
+				throw (ClassNotFoundException) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IOException(cause);
+		}
+	}
+
+	/**
+	 * Lazily splits a sequence of terms into batches and turns each batch into a task.
+	 */
+	public static abstract class BatchTaskIterator<T> implements Iterator<Callable<T>> {
+		private final Iterator<String> terms;
+		private final int batchSize;
+		private int batchNumber = 0;
+
+		public BatchTaskIterator(Iterator<String> terms, int batchSize) {
+			this.terms = terms;
+			this.batchSize = batchSize;
+		}
+
+		public boolean hasNext() {
+			return terms.hasNext();
+		}
+
+		public Callable<T> next() {
+			final List<String> batch = new ArrayList<String>(batchSize);
+			while (batch.size() < batchSize && terms.hasNext()) {
+				batch.add(terms.next());
+			}
+			final int number = ++batchNumber;
+			return new Callable<T>() {
+				public T call() throws Exception {
+					return process(batch, number);
+				}
+			};
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+		/**
+		 * Processes one batch of terms.
+		 * @param batch the terms of the batch
+		 * @param batchNumber the number of the batch, starting with 1
+		 */
+		protected abstract T process(List<String> batch, int batchNumber) throws Exception;
+	}
+
+	/**
+	 * Sorts an array with a parallel merge sort on a fork-join pool.
+	 */
+	public static <T> void sort(T[] array, Comparator<? super T> comparator) {
+		ForkJoinPool pool = new ForkJoinPool(getParallelism());
+		try {
+			pool.invoke(new SortTask<T>(array, Arrays.copyOf(array, array.length), 0, array.length, comparator));
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	private static class SortTask<T> extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final T[] array;
+		private final T[] buffer;
+		private final int from;
+		private final int to;
+		private final Comparator<? super T> comparator;
+
+		public SortTask(T[] array, T[] buffer, int from, int to, Comparator<? super T> comparator) {
+			this.array = array;
+			this.buffer = buffer;
+			this.from = from;
+			this.to = to;
+			this.comparator = comparator;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= SORT_THRESHOLD) {
+				Arrays.sort(array, from, to, comparator);
+				return;
+			}
+
+			int middle = (from + to) >>> 1;
+			invokeAll(new SortTask<T>(array, buffer, from, middle, comparator), new SortTask<T>(array, buffer, middle, to, comparator));
+
+			// merge both sorted halves via the buffer
+			System.arraycopy(array, from, buffer, from, to - from);
+			int left = from;
+			int right = middle;
+			for (int i = from; i < to; i++) {
+				if (right >= to || left < middle && comparator.compare(buffer[left], buffer[right]) <= 0) {
+					array[i] = buffer[left++];
+				} else {
+					array[i] = buffer[right++];
+				}
+			}
+		}
+	}
+}
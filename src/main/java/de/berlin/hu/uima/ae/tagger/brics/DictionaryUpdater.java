@@ -26,6 +26,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.zip.GZIPInputStream;
@@ -44,6 +45,7 @@ import de.berlin.hu.uima.ae.normalizer.Normalizer;
 import de.berlin.hu.uima.ae.tagger.abbrev.ExtractAbbrev;
 import de.berlin.hu.util.Constants;
 import de.berlin.hu.util.Constants.ChemicalID;
+import dk.brics.automaton.MappedRunAutomaton;
 import dk.brics.automaton.RunAutomaton;
 
 public class DictionaryUpdater {
@@ -96,6 +98,8 @@ public class DictionaryUpdater {
 	private static boolean chebiMustContainFormula = false;
 	private static URL pubchemSDFURL = null;
 	private static int pubchemMaxLength = 25;
+	private static boolean incremental = false;
+	private static int maxOverlays = 4;
 	
 	private static ExtractAbbrev extractAbbrev = null;
 	private static Set<String> filteredList = null;
@@ -124,6 +128,8 @@ public class DictionaryUpdater {
 		idsFilePath = ChemSpotConfiguration.getIdsFileUpdatePath();
 		chebiMustContainFormula = ChemSpotConfiguration.isChEBIUpdateMustContainFormula();
 		pubchemMaxLength = ChemSpotConfiguration.getPubChemMaxLength();
+		incremental = ChemSpotConfiguration.isIncrementalUpdate();
+		maxOverlays = ChemSpotConfiguration.getMaxUpdateOverlays();
 		
 		extractAbbrev = new ExtractAbbrev();
 		filteredList = new HashSet<String>();
@@ -704,38 +710,32 @@ public class DictionaryUpdater {
 		System.out.println("Done.");
 	}
 	
-	public static List<File> writeAutomata(Collection<String> chemicals, String outputLocation, String prefix) throws FileNotFoundException, IOException {
-		List<File> automataFiles = new ArrayList<File>();
-		
-		List<Collection<String>> batches = new ArrayList<Collection<String>>();
-		Iterator<String> chemical = chemicals.iterator();
+	public static List<File> writeAutomata(Collection<String> chemicals, final String outputLocation, final String prefix) throws FileNotFoundException, IOException {
 		int batchSize = BricsMatcher.DEFAULT_TERMS_PER_AUTOMATON;
-		while (chemical.hasNext()) {
-			int i = 0;
-			List<String> batch = new ArrayList<String>();
-			while (i < batchSize && chemical.hasNext()) {
-				batch.add(chemical.next());
-				i++;
+		Iterator<Callable<File>> tasks = new DictionaryTasks.BatchTaskIterator<File>(chemicals.iterator(), batchSize) {
+			@Override
+			protected File process(List<String> batch, int batchNumber) throws IOException {
+				RunAutomaton runAutomaton = BricsMatcher.createAutomaton(batch);
+				
+				File outputFile = new File(outputLocation + prefix + "_" + batchNumber + ".atm");
+				OutputStream s = new FileOutputStream(outputFile);
+				try {
+					runAutomaton.store(s);
+				} finally {
+					s.close();
+				}
+				
+				return outputFile;
 			}
-			batches.add(batch);
-		}
+		};
 		
-		int i = 1;
-		for (Collection<String> batch : batches) {
-			System.out.printf("\rCreating dictionary automata... %d / %d", i, batches.size());
-			RunAutomaton runAutomaton = BricsMatcher.createAutomaton(batch);
-			
-			File outputFile = new File(outputLocation + prefix + "_" + i++ + ".atm");
-			OutputStream s = new FileOutputStream(outputFile);
-			runAutomaton.store(s);
-			s.close();
-			
-			automataFiles.add(outputFile);
+		// only a few batches are kept in memory at once, every finished automaton is written to disk right away
+		try {
+			return DictionaryTasks.invokeAll(tasks, DictionaryTasks.getNumberOfBatches(chemicals.size(), batchSize),
+					"Creating dictionary automata", 2 * DictionaryTasks.getParallelism());
+		} catch (ClassNotFoundException e) {
+			throw new IOException(e);
 		}
-		
-		System.out.printf("\rCreating dictionary automata... Done.%n", i, batches.size());
-		
-		return automataFiles;
 	}
 	
 	public static File writeAutomaton(Collection<String> chemicals, File outputFile) throws FileNotFoundException, IOException {
@@ -945,7 +945,9 @@ public class DictionaryUpdater {
 			}*/
 			
 			writeIdsFile(chemicals, new File(outputLocation + "chebi.map"));
-			automatonFiles.add(writeAutomaton(chemicals.keySet(), new File(outputLocation + "chebi_updated.atm")));
+			if (!incremental) {
+				automatonFiles.add(writeAutomaton(chemicals.keySet(), new File(outputLocation + "chebi_updated.atm")));
+			}
 			mergeIDs(update, chemicals, false);
 			
 		}
@@ -960,7 +962,9 @@ public class DictionaryUpdater {
 			}*/
 			
 			writeIdsFile(chemicals, new File(outputLocation + "pubchem.map"));
-			automatonFiles.addAll(writeAutomata(chemicals.keySet(), outputLocation, "pubchem_updated"));
+			if (!incremental) {
+				automatonFiles.addAll(writeAutomata(chemicals.keySet(), outputLocation, "pubchem_updated"));
+			}
 			mergeIDs(update, chemicals, false);
 		}
 		
@@ -1014,53 +1018,100 @@ public class DictionaryUpdater {
 			
 			System.out.println("Done.");
 		}
+		
+		if (dictionaryFile != null && incremental && !update.isEmpty()) {
+			System.out.println();
+			System.out.println("--- Updating Dictionary Overlay ---");
+			addDictionaryOverlay(dictionaryFile, update.keySet());
+		}
+	}
+	
+	/**
+	 * Adds those chemicals that are not yet contained in a dictionary as an overlay of the dictionary
+	 * (see {@link BricsMatcher#addOverlay(File, Collection)}).
+	 * @return the overlay file, or null if all chemicals are already contained in the dictionary
+	 */
+	public static File addDictionaryOverlay(File dictionaryFile, Collection<String> chemicals) throws IOException {
+		BricsMatcher dictionary;
+		try {
+			dictionary = new BricsMatcher(dictionaryFile.getPath());
+		} catch (ClassNotFoundException e) {
+			throw new IOException(e);
+		}
+		
+		List<String> newChemicals = new ArrayList<String>();
+		for (String chemical : chemicals) {
+			if (!dictionary.contains(chemical)) {
+				newChemicals.add(chemical);
+			}
+		}
+		dictionary = null;
+		System.out.printf("%d of %d chemicals are new%n", newChemicals.size(), chemicals.size());
+		
+		return newChemicals.isEmpty() ? null : BricsMatcher.addOverlay(dictionaryFile, newChemicals);
+	}
+	
+	/**
+	 * Merges all overlays of a dictionary into the dictionary. The entries of the overlays are added to the zip file
+	 * as further automata, the merged automaton of the dictionary is rebuilt and the overlays are deleted afterwards,
+	 * so that a matcher started in between finds every entry.
+	 */
+	public static void compactDictionary(File dictionaryFile) throws IOException {
+		List<File> overlayFiles = BricsMatcher.getOverlayFiles(dictionaryFile);
+		if (overlayFiles.isEmpty()) {
+			return;
+		}
+		
+		System.out.println();
+		System.out.println("--- Compacting Dictionary ---");
+		new File(outputLocation).mkdirs();
+		List<String> chemicals = new ArrayList<String>();
+		for (File overlayFile : overlayFiles) {
+			BricsMatcher.collectStrings(MappedRunAutomaton.load(overlayFile), chemicals);
+		}
+		String prefix = "overlay_" + new SimpleDateFormat("yyyyMMddHHmmss").format(new Date());
+		List<File> automatonFiles = writeAutomata(chemicals, outputLocation, prefix);
+		
+		System.out.print("Writing dictionary to '" + outputLocation + "dict.zip'... ");
+		updateDictionaryFile(dictionaryFile, automatonFiles);
+		System.out.println("Done.");
+		
+		if (!replaceFile(dictionaryFile, new File(outputLocation + "dict.zip"))) {
+			throw new IOException("could not replace dictionary " + dictionaryFile);
+		}
+		try {
+			new BricsMatcher(dictionaryFile.getPath());
+		} catch (ClassNotFoundException e) {
+			throw new IOException(e);
+		}
+		
+		for (File overlayFile : overlayFiles) {
+			if (overlayFile.delete()) {
+				System.out.println("Deleted merged overlay " + overlayFile);
+			} else {
+				System.out.println("Could not delete merged overlay " + overlayFile);
+			}
+		}
 	}
 	
 	public static void updateFiles(File dictionaryFile, File idsFile, boolean removeTemporaryFiles) throws FileNotFoundException, IOException {
 		File newDictFile = new File(outputLocation + "dict.zip");
 		File newIdsFile = new File(outputLocation + "ids.zip");
-		String extensionPattern = "(\\.[^\\./\\\\]+)+$";
 		
 		update(dictionaryFile, idsFile);
 		
 		System.out.println();
 		
 		if (newDictFile.exists() && dictionaryFile.exists()) {
-			String oldFilePath = dictionaryFile.getPath().replaceAll(extensionPattern, "-old$1");
-			
-			int i = 2;
-			while (new File(oldFilePath).exists()) {
-				oldFilePath = dictionaryFile.getPath().replaceAll(extensionPattern, "-old" + i++ + "$1");
-			}
-			
-			System.out.printf("Renaming '%s' to '%s'%n", dictionaryFile, oldFilePath);
-			if (dictionaryFile.renameTo(new File(oldFilePath))) {
-				System.out.printf("Moving '%s' to '%s'%n", newDictFile, dictionaryFile);
-				if (!newDictFile.renameTo(dictionaryFile)) {
-					System.out.printf("Could not move '%s' to '%s'%n", newDictFile, dictionaryFile);
-				}
-			} else {
-				System.out.printf("Could not rename '%s' to '%s'%n", dictionaryFile, oldFilePath);
-			}
+			replaceFile(dictionaryFile, newDictFile);
 		}
 		
 		if (newIdsFile.exists() && idsFile.exists()) {
-			String oldFilePath = idsFile.getPath().replaceAll(extensionPattern, "-old$1");
-			
-			int i = 2;
-			while (new File(oldFilePath).exists()) {
-				oldFilePath = idsFile.getPath().replaceAll(extensionPattern, "-old" + i++ + "$1");
-			}
-			
-			System.out.printf("Renaming '%s' to '%s'%n", idsFile, oldFilePath);
-			if (idsFile.renameTo(new File(oldFilePath))) {
-				System.out.printf("Moving '%s' to '%s'%n", newIdsFile, idsFile);
-				if (!newIdsFile.renameTo(idsFile)) {
-					System.out.printf("Could not move '%s' to '%s'%n", newIdsFile, idsFile);
-				}
-			} else {
-				System.out.printf("Could not rename '%s' to '%s'%n", idsFile, oldFilePath);
-			}
+			replaceFile(idsFile, newIdsFile);
+		}
+		
+		if (incremental && BricsMatcher.getOverlayFiles(dictionaryFile).size() > maxOverlays) {
+			compactDictionary(dictionaryFile);
 		}
 		
 		if (removeTemporaryFiles) {
@@ -1069,6 +1120,33 @@ public class DictionaryUpdater {
 		}
 	}
 	
+	/**
+	 * Keeps a file as {@code <name>-old<n>.<extension>} and moves a new file to its place.
+	 * @return whether the new file was moved
+	 */
+	private static boolean replaceFile(File file, File newFile) {
+		String extensionPattern = "(\\.[^\\./\\\\]+)+$";
+		String oldFilePath = file.getPath().replaceAll(extensionPattern, "-old$1");
+		
+		int i = 2;
+		while (new File(oldFilePath).exists()) {
+			oldFilePath = file.getPath().replaceAll(extensionPattern, "-old" + i++ + "$1");
+		}
+		
+		System.out.printf("Renaming '%s' to '%s'%n", file, oldFilePath);
+		if (file.renameTo(new File(oldFilePath))) {
+			System.out.printf("Moving '%s' to '%s'%n", newFile, file);
+			if (!newFile.renameTo(file)) {
+				System.out.printf("Could not move '%s' to '%s'%n", newFile, file);
+				return false;
+			}
+			return true;
+		} else {
+			System.out.printf("Could not rename '%s' to '%s'%n", file, oldFilePath);
+			return false;
+		}
+	}
+	
 	public static void removeDir(String dir) {
 		File outputDir = new File(outputLocation);
 		for (File file : outputDir.listFiles()) {
@@ -0,0 +1,291 @@
+package de.berlin.hu.uima.ae.tagger.brics;
+
+import dk.brics.automaton.StringUnionOperations;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+
+/**
+ * A {@link DictionaryMatcher} holding the dictionary in a double-array trie: the children of a state {@code s} are
+ * found at {@code base[s] + code(c)}, and a child belongs to {@code s} if {@code check[child] == s + 1}. Every state
+ * takes two ints, and a transition is a single array lookup without searching the transitions of the state.
+ *
+ * Unlike a minimal automaton the trie does not share common suffixes, so it usually has more states than the
+ * {@link BricsMatcher} automaton of the same dictionary. See {@link DictionaryMatcherBenchmark} for a comparison.
+ */
+public class DoubleArrayTrieMatcher implements DictionaryMatcher {
+	private static final int ROOT = 0;
+
+	/** the code of each character, 0 for characters not occurring in the dictionary */
+	private final char[] codes = new char[Character.MAX_VALUE + 1];
+	private int[] base;
+	private int[] check;
+	private final BitSet accept = new BitSet();
+	private int size = 1;
+	private int nextCheckPosition = 1;
+	private int entries = 0;
+
+	public DoubleArrayTrieMatcher(Collection<String> chemicals) {
+		this(chemicals, false);
+	}
+
+	/**
+	 * Builds the trie of a dictionary.
+	 * @param chemicals the dictionary entries (may contain duplicates)
+	 * @param foldCase whether the dictionary should ignore case, i.e. be built from the lower case variants of the
+	 * entries (see {@link BricsMatcher#foldCase(String)}) and match any case variant of them
+	 */
+	public DoubleArrayTrieMatcher(Collection<String> chemicals, boolean foldCase) {
+		String[] keys = chemicals.toArray(new String[chemicals.size()]);
+		for (int i = 0; foldCase && i < keys.length; i++) {
+			keys[i] = BricsMatcher.foldCase(keys[i]);
+		}
+		DictionaryTasks.sort(keys, StringUnionOperations.LEXICOGRAPHIC_ORDER);
+
+		// codes are assigned in character order, so the sorted keys are sorted by code as well
+		for (String key : keys) {
+			for (int i = 0; i < key.length(); i++) {
+				codes[key.charAt(i)] = 1;
+			}
+		}
+		char code = 0;
+		for (int c = 0; c < codes.length; c++) {
+			if (codes[c] != 0) {
+				codes[c] = ++code;
+			}
+		}
+		if (foldCase) {
+			for (int c = 0; c < codes.length; c++) {
+				if (codes[c] == 0) {
+					codes[c] = codes[Character.toLowerCase((char) c)];
+				}
+			}
+		}
+
+		int capacity = Math.max(1 << 10, keys.length);
+		base = new int[capacity];
+		check = new int[capacity];
+		insert(keys, 0, keys.length, 0, ROOT);
+		base = Arrays.copyOf(base, size);
+		check = Arrays.copyOf(check, size);
+	}
+
+	/**
+	 * Adds the states for the keys {@code keys[from]} to {@code keys[to - 1]}, which are sorted, distinct
+	 * up to duplicates and share the prefix of length {@code depth} leading to {@code state}.
+	 */
+	private void insert(String[] keys, int from, int to, int depth, int state) {
+		// the shortest key comes first, duplicates follow each other
+		while (from < to && keys[from].length() == depth) {
+			if (!accept.get(state)) {
+				accept.set(state);
+				entries++;
+			}
+			from++;
+		}
+		if (from == to) {
+			return;
+		}
+
+		int children = 0;
+		for (int i = from; i < to; i++) {
+			if (i == from || keys[i].charAt(depth) != keys[i - 1].charAt(depth)) {
+				children++;
+			}
+		}
+		int[] childCodes = new int[children];
+		int[] childStarts = new int[children + 1];
+		int child = 0;
+		for (int i = from; i < to; i++) {
+			if (i == from || keys[i].charAt(depth) != keys[i - 1].charAt(depth)) {
+				childCodes[child] = codes[keys[i].charAt(depth)];
+				childStarts[child++] = i;
+			}
+		}
+		childStarts[children] = to;
+
+		int stateBase = findBase(childCodes);
+		base[state] = stateBase;
+		for (int i = 0; i < children; i++) {
+			check[stateBase + childCodes[i]] = state + 1;
+		}
+		for (int i = 0; i < children; i++) {
+			insert(keys, childStarts[i], childStarts[i + 1], depth + 1, stateBase + childCodes[i]);
+		}
+	}
+
+	/**
+	 * @return the smallest base at which all given (ascending) codes lead to free positions, starting the search at
+	 * the first position that is not densely occupied yet
+	 */
+	private int findBase(int[] childCodes) {
+		int firstCode = childCodes[0];
+		int position = Math.max(firstCode + 1, nextCheckPosition) - 1;
+		int occupied = 0;
+		boolean first = true;
+		while (true) {
+			position++;
+			ensureCapacity(position + 1);
+			if (check[position] != 0) {
+				occupied++;
+				continue;
+			} else if (first) {
+				nextCheckPosition = position;
+				first = false;
+			}
+
+			int candidate = position - firstCode;
+			ensureCapacity(candidate + childCodes[childCodes.length - 1] + 1);
+			boolean free = true;
+			for (int i = 1; i < childCodes.length && free; i++) {
+				free = check[candidate + childCodes[i]] == 0;
+			}
+			if (free) {
+				// skip the densely occupied positions in later searches
+				if (occupied >= 0.95 * (position - nextCheckPosition + 1)) {
+					nextCheckPosition = position;
+				}
+				size = Math.max(size, candidate + childCodes[childCodes.length - 1] + 1);
+				return candidate;
+			}
+		}
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity > check.length) {
+			int newCapacity = Math.max(capacity, check.length + (check.length >> 1));
+			base = Arrays.copyOf(base, newCapacity);
+			check = Arrays.copyOf(check, newCapacity);
+		}
+	}
+
+	/**
+	 * @return the state reached from a state with a character, or -1 if there is none
+	 */
+	private int step(int state, char c) {
+		int code = codes[c];
+		if (code == 0) {
+			return -1;
+		}
+		int next = base[state] + code;
+		return next < check.length && check[next] == state + 1 ? next : -1;
+	}
+
+	/**
+	 * @return the end of the longest entry starting at {@code start}, or -1 if there is none
+	 */
+	private int getLongestMatchEnd(CharSequence text, int start) {
+		int end = -1;
+		int state = ROOT;
+		for (int i = start; i < text.length(); i++) {
+			state = step(state, text.charAt(i));
+			if (state == -1) {
+				break;
+			}
+			if (accept.get(state)) {
+				end = i + 1;
+			}
+		}
+		return end;
+	}
+
+	public void match(CharSequence text, IntMatchSink sink) {
+		int length = text.length();
+		int start = 0;
+		while (start < length) {
+			int end = getLongestMatchEnd(text, start);
+			if (end == -1) {
+				start++;
+				continue;
+			}
+
+			int mentionEnd = BricsMatcher.getMentionEnd(text, start, end);
+			if (mentionEnd != -1 && BricsMatcher.isLeftBoundary(text, start)) {
+				sink.match(start, mentionEnd);
+			}
+			start = end;
+		}
+	}
+
+	public void matchLeftmostLongest(CharSequence text, IntMatchSink sink) {
+		matchLeftmostLongest(text, Boundary.WORD, null, sink);
+	}
+
+	public void matchLeftmostLongest(CharSequence text, Boundary boundary, BitSet tokenBoundaries, IntMatchSink sink) {
+		if (boundary == Boundary.TOKEN && tokenBoundaries == null) {
+			throw new IllegalArgumentException("token boundaries are required for boundary mode " + boundary);
+		}
+
+		int length = text.length();
+		int start = boundary == Boundary.TOKEN ? tokenBoundaries.nextSetBit(0) : 0;
+		while (start != -1 && start < length) {
+			int next = -1;
+			int longest = -1;
+			if (boundary == Boundary.CHARACTER) {
+				next = getLongestMatchEnd(text, start);
+				if (next != -1 && BricsMatcher.isLeftBoundary(text, start)) {
+					longest = BricsMatcher.getMentionEnd(text, start, next);
+				}
+			} else if (BricsMatcher.isLeftBoundary(text, start)) {
+				int state = ROOT;
+				for (int i = start; i < length; i++) {
+					state = step(state, text.charAt(i));
+					if (state == -1) {
+						break;
+					}
+					if (accept.get(state) && (boundary == Boundary.WORD || tokenBoundaries.get(i + 1))) {
+						int mentionEnd = BricsMatcher.getMentionEnd(text, start, i + 1);
+						if (mentionEnd != -1) {
+							next = i + 1;
+							longest = mentionEnd;
+						}
+					}
+				}
+			}
+
+			if (longest != -1) {
+				sink.match(start, longest);
+				next = longest;
+			}
+			if (next == -1) {
+				next = start + 1;
+			}
+			start = boundary == Boundary.TOKEN ? tokenBoundaries.nextSetBit(next) : next;
+		}
+	}
+
+	public boolean contains(String term) {
+		int state = ROOT;
+		for (int i = 0; i < term.length() && state != -1; i++) {
+			state = step(state, term.charAt(i));
+		}
+		return state != -1 && accept.get(state);
+	}
+
+	/**
+	 * @return the number of distinct entries
+	 */
+	public int getNumberOfEntries() {
+		return entries;
+	}
+
+	/**
+	 * @return the number of positions in the double array, i.e. the number of states plus unused positions
+	 */
+	public int getSize() {
+		return check.length;
+	}
+
+	/**
+	 * @return the number of bytes taken by the arrays of the trie
+	 */
+	public long getMemoryUsage() {
+		return 8L * check.length + accept.size() / 8 + 2L * codes.length;
+	}
+
+	@Override
+	public String toString() {
+		return "double-array trie with " + entries + " entries and " + check.length + " positions";
+	}
+}
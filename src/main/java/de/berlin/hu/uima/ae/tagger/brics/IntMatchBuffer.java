@@ -0,0 +1,60 @@
+package de.berlin.hu.uima.ae.tagger.brics;
+
+import java.util.Arrays;
+
+/**
+ * An {@link IntMatchSink} collecting matches in primitive arrays. The arrays grow as needed and are kept
+ * when the buffer is cleared, so one buffer can be reused for all documents processed by a tagger.
+ */
+public class IntMatchBuffer implements IntMatchSink {
+	private static final int INITIAL_CAPACITY = 256;
+
+	private int[] starts = new int[INITIAL_CAPACITY];
+	private int[] ends = new int[INITIAL_CAPACITY];
+	private long[] sortKeys = new long[0];
+	private int size = 0;
+
+	public void match(int start, int end) {
+		if (size == starts.length) {
+			starts = Arrays.copyOf(starts, size * 2);
+			ends = Arrays.copyOf(ends, size * 2);
+		}
+		starts[size] = start;
+		ends[size] = end;
+		size++;
+	}
+
+	public void clear() {
+		size = 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int getStart(int i) {
+		return starts[i];
+	}
+
+	public int getEnd(int i) {
+		return ends[i];
+	}
+
+	/**
+	 * Sorts the matches by start position and matches with the same start position by decreasing length.
+	 */
+	public void sort() {
+		if (sortKeys.length < size) {
+			sortKeys = new long[starts.length];
+		}
+		// offsets are non-negative, so a single long per match sorts by start first and by descending end second
+		for (int i = 0; i < size; i++) {
+			sortKeys[i] = ((long) starts[i] << 32) | (Integer.MAX_VALUE - ends[i]);
+		}
+		Arrays.sort(sortKeys, 0, size);
+		for (int i = 0; i < size; i++) {
+			starts[i] = (int) (sortKeys[i] >>> 32);
+			ends[i] = Integer.MAX_VALUE - (int) sortKeys[i];
+		}
+	}
+}
@@ -0,0 +1,13 @@
+package de.berlin.hu.uima.ae.tagger.brics;
+
+/**
+ * Receives the dictionary matches found by {@link DictionaryMatcher#match(CharSequence, IntMatchSink)}
+ * as plain character offsets, so that no objects have to be created per match.
+ */
+public interface IntMatchSink {
+	/**
+	 * @param start position of the first character of the match
+	 * @param end position after the last character of the match (exclusive)
+	 */
+	void match(int start, int end);
+}
@@ -4,7 +4,9 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.PrintStream;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 import org.apache.commons.io.output.NullOutputStream;
 import org.apache.uima.UimaContext;
@@ -17,19 +19,23 @@ import org.u_compare.shared.syntactic.Sentence;
 import org.u_compare.shared.syntactic.Token;
 import org.uimafit.util.JCasUtil;
 
+import scala.Console$;
 import scala.Tuple2;
 import scala.collection.Iterator;
+import scala.runtime.AbstractFunction0;
 import simplexnlp.core.Entity;
 
 import de.berlin.hu.chemspot.ChemSpotConfiguration;
 import de.berlin.hu.eumed.Config;
 import de.berlin.hu.eumed.EntityTagger;
 import de.berlin.hu.types.PubmedDocument;
+import de.berlin.hu.uima.ae.tagger.DeferredTagging;
 import de.berlin.hu.util.Constants;
 import de.berlin.hu.util.Constants.ChemicalType;
 
 public class EumedNERTagger extends JCasAnnotator_ImplBase {
 	public static final String PATH_TO_EUMED_MODEL = "pathToEumedModel";
+	private static final PrintStream QUIET = new PrintStream(new NullOutputStream());
 	
 	private EntityTagger tagger = null;
 	
@@ -42,6 +48,7 @@ public class EumedNERTagger extends JCasAnnotator_ImplBase {
 	public void initialize(UimaContext aContext) throws ResourceInitializationException {
 		String eumedModel = (String)aContext.getConfigParameterValue(PATH_TO_EUMED_MODEL);
 		
+		// every instance loads its own tagger, as tagging runs the model's mallet pipe, which may add to its alphabets
 		tagger = new EntityTagger();
 		tagger.add(new Tuple2<String, String>("path", eumedModel));
 		tagger.add(new Tuple2<String, Config>("config", new Config(new String[0])));
@@ -50,10 +57,13 @@ public class EumedNERTagger extends JCasAnnotator_ImplBase {
 	
 	@Override
 	public void process(JCas aJCas) throws AnalysisEngineProcessException {
+		// the documents are converted first, as only this thread may read the CAS
+		final List<simplexnlp.core.Document> simplexDocs = new ArrayList<simplexnlp.core.Document>();
+		final List<Integer> offsets = new ArrayList<Integer>();
 		Iterable<PubmedDocument> documents = JCasUtil.iterate(aJCas, PubmedDocument.class);
 		for (PubmedDocument doc : documents) {
 			String docId = doc.getPmid();
-			simplexnlp.core.Document simplexDoc = new simplexnlp.core.Document(docId, doc.getCoveredText());
+			final simplexnlp.core.Document simplexDoc = new simplexnlp.core.Document(docId, doc.getCoveredText());
 			
 			Iterable<Sentence> sentences = JCasUtil.selectCovered(aJCas, Sentence.class,  doc);
 			int i = 0;
@@ -73,28 +83,53 @@ public class EumedNERTagger extends JCasAnnotator_ImplBase {
 				}
 			}
 			
-			// ugly hack to avoid debug output from model
-			synchronized(System.out) {
-				PrintStream out = System.out;
-				System.setOut(new PrintStream(new NullOutputStream()));
-
+			simplexDocs.add(simplexDoc);
+			offsets.add(doc.getBegin());
+		}
+		
+		DeferredTagging.run(aJCas, new Callable<DeferredTagging.Result>() {
+			public DeferredTagging.Result call() {
+				final List<int[]> spans = new ArrayList<int[]>();
+				final List<String> types = new ArrayList<String>();
+				for (int i = 0; i < simplexDocs.size(); i++) {
+					tag(simplexDocs.get(i), offsets.get(i), spans, types);
+				}
+				return new DeferredTagging.Result() {
+					public void addTo(JCas aJCas) {
+						for (int i = 0; i < spans.size(); i++) {
+							createChemicalAnnotation(aJCas, spans.get(i)[0], spans.get(i)[1], types.get(i));
+						}
+					}
+				};
+			}
+		});
+	}
+	
+	/**
+	 * Tags a converted document and adds the begin, end and type of every entity that should be annotated.
+	 * @param offset the begin of the document in the text
+	 */
+	private void tag(final simplexnlp.core.Document simplexDoc, int offset, List<int[]> spans, List<String> types) {
+		// the model prints debug output with scala's println, which is discarded for this thread only
+		Console$.MODULE$.withOut(QUIET, new AbstractFunction0<Object>() {
+			public Object apply() {
 				tagger.process(simplexDoc);
-				
-				System.setOut(out);
+				return null;
 			}
-			
-			Iterator<simplexnlp.core.Sentence> simplexSentences = simplexDoc.sentences().toIterator();
-			while (simplexSentences.hasNext()) {
-				simplexnlp.core.Sentence sentence = simplexSentences.next();
-				 
-				Iterator<Entity> entities = sentence.entities().toIterator();
-				while (entities.hasNext()) {
-					Entity entity = entities.next();
-					
-					ChemicalType type = ChemicalType.fromString(entity.className());
-					if (ChemSpotConfiguration.isAnnotateEumed(type)) {
-						createChemicalAnnotation(aJCas, sentence.start() + entity.start() + doc.getBegin(), sentence.start() + doc.getBegin() + entity.end() + 1, entity.className());
-					}
+		});
+		
+		Iterator<simplexnlp.core.Sentence> simplexSentences = simplexDoc.sentences().toIterator();
+		while (simplexSentences.hasNext()) {
+			simplexnlp.core.Sentence sentence = simplexSentences.next();
+			 
+			Iterator<Entity> entities = sentence.entities().toIterator();
+			while (entities.hasNext()) {
+				Entity entity = entities.next();
+				
+				ChemicalType type = ChemicalType.fromString(entity.className());
+				if (ChemSpotConfiguration.isAnnotateEumed(type)) {
+					spans.add(new int[] {sentence.start() + entity.start() + offset, sentence.start() + offset + entity.end() + 1});
+					types.add(entity.className());
 				}
 			}
 		}
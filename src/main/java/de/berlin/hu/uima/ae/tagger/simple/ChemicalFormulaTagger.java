@@ -1,5 +1,8 @@
 package de.berlin.hu.uima.ae.tagger.simple;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -8,6 +11,7 @@ import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
 import org.apache.uima.jcas.JCas;
 import org.u_compare.shared.semantic.chemical.Chemical;
 
+import de.berlin.hu.uima.ae.tagger.DeferredTagging;
 import de.berlin.hu.util.Constants;
 import de.berlin.hu.util.Constants.ChemicalType;
 
@@ -22,8 +26,27 @@ public class ChemicalFormulaTagger extends JCasAnnotator_ImplBase {
 	
 	@Override
 	public void process(JCas aJCas) throws AnalysisEngineProcessException {
-		String text = aJCas.getDocumentText();
+		final String text = aJCas.getDocumentText();
 		
+		DeferredTagging.run(aJCas, new Callable<DeferredTagging.Result>() {
+			public DeferredTagging.Result call() {
+				final List<int[]> formulas = findFormulas(text);
+				return new DeferredTagging.Result() {
+					public void addTo(JCas aJCas) {
+						for (int[] formula : formulas) {
+							createFormulaAnnotation(aJCas, formula[0], formula[1], null);
+						}
+					}
+				};
+			}
+		});
+	}
+	
+	/**
+	 * @return the begin and end of every formula in the text
+	 */
+	private static List<int[]> findFormulas(String text) {
+		List<int[]> formulas = new ArrayList<int[]>();
 		Matcher matcher = FORMULA_PATTERN.matcher(text);
 		while (matcher.find()) {
 			String formula = matcher.group();
@@ -38,9 +61,10 @@ public class ChemicalFormulaTagger extends JCasAnnotator_ImplBase {
 			}
 			
 			if (formula.replaceAll("\\(|\\)", "").length() > 2 && (MUST_CONTAIN.matcher(formula).find()) && !DOES_NOT_MATCH.matcher(formula).matches()) {
-				createFormulaAnnotation(aJCas, begin, end, null);
+				formulas.add(new int[] {begin, end});
 			}
 		}
+		return formulas;
 	}
 	
 	private Chemical createFormulaAnnotation(JCas aJCas, int begin, int end, String id) {
@@ -0,0 +1,141 @@
+package de.berlin.hu.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded cache that evicts the least recently used entries, safe for use by several threads. The entries are
+ * spread over segments with a lock each, so threads only contend when they access the same segment, and every
+ * segment evicts on its own once it holds its share of the maximum size.
+ *
+ * Null values cannot be cached; callers that want to remember that there is no value for a key should cache a
+ * sentinel value instead.
+ */
+public class LruCache<K, V> {
+	private static final int SEGMENTS = 16;
+
+	private final Segment<K, V>[] segments;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+
+	private static class Segment<K, V> extends LinkedHashMap<K, V> {
+		private static final long serialVersionUID = 1L;
+		private final int maxSize;
+		private final AtomicLong evictions;
+
+		Segment(int maxSize, AtomicLong evictions) {
+			super(16, 0.75f, true);
+			this.maxSize = maxSize;
+			this.evictions = evictions;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+			if (size() > maxSize) {
+				evictions.incrementAndGet();
+				return true;
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * @param maxSize the maximum number of entries, at least 1
+	 */
+	@SuppressWarnings("unchecked")
+	public LruCache(int maxSize) {
+		if (maxSize < 1) {
+			throw new IllegalArgumentException("maximum size must be at least 1: " + maxSize);
+		}
+		int segmentCount = Math.min(SEGMENTS, maxSize);
+		segments = new Segment[segmentCount];
+		for (int i = 0; i < segmentCount; i++) {
+			segments[i] = new Segment<K, V>(maxSize / segmentCount + (i < maxSize % segmentCount ? 1 : 0), evictions);
+		}
+	}
+
+	private Segment<K, V> getSegment(Object key) {
+		int hash = key.hashCode();
+		hash ^= (hash >>> 20) ^ (hash >>> 12);
+		hash ^= (hash >>> 7) ^ (hash >>> 4);
+		return segments[(hash & Integer.MAX_VALUE) % segments.length];
+	}
+
+	/**
+	 * @return the cached value of the key or null, counted as a hit or a miss
+	 */
+	public V get(K key) {
+		Segment<K, V> segment = getSegment(key);
+		V value;
+		synchronized (segment) {
+			value = segment.get(key);
+		}
+		(value != null ? hits : misses).incrementAndGet();
+		return value;
+	}
+
+	/**
+	 * Caches a value, evicting the least recently used entry of its segment if the segment is full.
+	 */
+	public void put(K key, V value) {
+		if (value == null) {
+			throw new NullPointerException("null values cannot be cached");
+		}
+		Segment<K, V> segment = getSegment(key);
+		synchronized (segment) {
+			segment.put(key, value);
+		}
+	}
+
+	/**
+	 * @return the number of cached entries
+	 */
+	public int size() {
+		int size = 0;
+		for (Segment<K, V> segment : segments) {
+			synchronized (segment) {
+				size += segment.size();
+			}
+		}
+		return size;
+	}
+
+	public void clear() {
+		for (Segment<K, V> segment : segments) {
+			synchronized (segment) {
+				segment.clear();
+			}
+		}
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * @return the number of entries dropped to make room for new ones
+	 */
+	public long getEvictions() {
+		return evictions.get();
+	}
+
+	/**
+	 * @return the share of lookups that were hits, 0 if there were none
+	 */
+	public float getHitRate() {
+		long hits = getHits();
+		long lookups = hits + getMisses();
+		return lookups > 0 ? (float) hits / lookups : 0;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d entries, %d hits, %d misses (hit rate %.1f %%), %d evictions", size(), getHits(), getMisses(), 100 * getHitRate(), getEvictions());
+	}
+}
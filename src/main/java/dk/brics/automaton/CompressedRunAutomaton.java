@@ -1,14 +1,22 @@
 package dk.brics.automaton;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Date: 12.05.2015
  * Time: 17:23
  */
-public class CompressedRunAutomaton extends RunAutomaton {
+public class CompressedRunAutomaton extends RunAutomaton implements NumberedAutomaton {
     int[] transitionOffsets;
     int[] transitionPoints;
+    // number of accepted strings that precede the strings continuing with a transition, parallel to transitions
+    int[] entryRanks;
+    int entries;
 
     public CompressedRunAutomaton(RunAutomaton runAutomaton) {
         super(Automaton.makeAnyChar());
@@ -44,21 +52,210 @@ public class CompressedRunAutomaton extends RunAutomaton {
             }
         }
         this.transitions = Arrays.copyOf(newTransitions, newOffset);
+        computeEntryRanks();
     }
 
-    @Override
-    public int step(int state, char c) {
+    /**
+     * Creates a compressed run automaton directly from a deterministic automaton, e.g. one built by
+     * {@link StringUnionOperations#build(CharSequence[])}. Unlike {@link RunAutomaton#RunAutomaton(Automaton)}
+     * this neither determinizes the automaton again nor allocates the dense size * points transition table,
+     * so a single automaton can be built for dictionaries that are too large for one {@link RunAutomaton}.
+     * @param automaton a deterministic automaton
+     */
+    public CompressedRunAutomaton(Automaton automaton) {
+        super(Automaton.makeAnyChar());
+        points = automaton.getStartPoints();
+        setAlphabet();
+
+        // number states in breadth-first order, the initial state gets number 0
+        Map<State, Integer> numbers = new IdentityHashMap<State, Integer>();
+        List<State> states = new ArrayList<State>();
+        LinkedList<State> statesToVisit = new LinkedList<State>();
+        numbers.put(automaton.getInitialState(), 0);
+        states.add(automaton.getInitialState());
+        statesToVisit.add(automaton.getInitialState());
+        while (!statesToVisit.isEmpty()) {
+            State state = statesToVisit.removeFirst();
+            for (Transition transition : state.getTransitions()) {
+                State to = transition.getDest();
+                if (!numbers.containsKey(to)) {
+                    numbers.put(to, states.size());
+                    states.add(to);
+                    statesToVisit.add(to);
+                }
+            }
+        }
+
+        size = states.size();
+        initial = 0;
+        accept = new boolean[size];
+        transitionOffsets = new int[size];
+        transitionPoints = new int[size];
+
+        int[] newTransitions = new int[Math.max(size, 16)];
+        int newOffset = 0;
+        for (int stateIndex = 0; stateIndex < size; stateIndex++) {
+            State state = states.get(stateIndex);
+            accept[stateIndex] = state.isAccept();
+            transitionOffsets[stateIndex] = newOffset;
+            List<Transition> stateTransitions = state.getSortedTransitions(false);
+            if (stateTransitions.isEmpty()) {
+                transitionPoints[stateIndex] = points.length;
+                continue;
+            }
+            int beginPoint = getCharClass(stateTransitions.get(0).getMin());
+            int endPoint = getCharClass(stateTransitions.get(stateTransitions.size() - 1).getMax()) + 1;
+            transitionPoints[stateIndex] = beginPoint;
+            if (newOffset + endPoint - beginPoint > newTransitions.length) {
+                newTransitions = Arrays.copyOf(newTransitions, Math.max(newTransitions.length * 2, newOffset + endPoint - beginPoint));
+            }
+            Arrays.fill(newTransitions, newOffset, newOffset + endPoint - beginPoint, -1);
+            for (Transition transition : stateTransitions) {
+                int to = numbers.get(transition.getDest());
+                for (int point = getCharClass(transition.getMin()); point <= getCharClass(transition.getMax()); point++) {
+                    newTransitions[newOffset + point - beginPoint] = to;
+                }
+            }
+            newOffset += endPoint - beginPoint;
+        }
+        this.transitions = Arrays.copyOf(newTransitions, newOffset);
+        computeEntryRanks();
+    }
+
+    /**
+     * Counts the accepted strings below each state in a depth-first post-order and stores, for each transition,
+     * how many accepted strings precede the strings continuing with it. Leaves {@link #entryRanks} null if the
+     * automaton contains a cycle.
+     */
+    private void computeEntryRanks() {
+        int[] counts = new int[size];
+        byte[] marks = new byte[size]; // 0: not visited, 1: on the stack, 2: counted
+        int[] stack = new int[size];
+        int[] nextOffsets = new int[size];
+        int[] ranks = new int[transitions.length];
+
+        int top = 0;
+        stack[0] = initial;
+        nextOffsets[0] = transitionOffsets[initial];
+        marks[initial] = 1;
+        while (top >= 0) {
+            int state = stack[top];
+            int endOffset = getEndOffset(state);
+            if (nextOffsets[top] < endOffset) {
+                int to = transitions[nextOffsets[top]++];
+                if (to == -1 || marks[to] == 2) {
+                    continue;
+                }
+                if (marks[to] == 1) {
+                    return;
+                }
+                marks[to] = 1;
+                stack[++top] = to;
+                nextOffsets[top] = transitionOffsets[to];
+            } else {
+                int count = accept[state] ? 1 : 0;
+                for (int offset = transitionOffsets[state]; offset < endOffset; offset++) {
+                    if (transitions[offset] != -1) {
+                        ranks[offset] = count;
+                        count += counts[transitions[offset]];
+                    }
+                }
+                counts[state] = count;
+                marks[state] = 2;
+                top--;
+            }
+        }
+
+        entryRanks = ranks;
+        entries = counts[initial];
+    }
+
+    /**
+     * Makes the automaton ignore case by mapping every character to the character class of its lower case variant
+     * ({@link Character#toLowerCase(char)}), so a single lower case entry matches all case variants of itself.
+     * The automaton must only contain lower case strings. Entry numbers are shared by all case variants.
+     */
+    public void foldCase() {
+        if (classmap == null) {
+            setAlphabet();
+        }
+        for (int c = Character.MIN_VALUE; c <= Character.MAX_VALUE; c++) {
+            char lowerCase = Character.toLowerCase((char) c);
+            if (lowerCase != c) {
+                classmap[c - Character.MIN_VALUE] = classmap[lowerCase - Character.MIN_VALUE];
+            }
+        }
+    }
+
+    private int getEndOffset(int state) {
+        return state + 1 < size ? transitionOffsets[state + 1] : transitions.length;
+    }
+
+    /**
+     * @return the index of the transition of a state for a character, or -1 if there is none
+     */
+    private int getTransitionOffset(int state, char c) {
         int point = classmap == null ? getCharClass(c) : classmap[c - Character.MIN_VALUE];
-        int beginPoint = transitionPoints[state];
-        int pointOffset = point - beginPoint;
+        int pointOffset = point - transitionPoints[state];
         if (pointOffset < 0) {
             return -1;
         }
-        int beginOffset = transitionOffsets[state];
-        int endOffset = state + 1 < size ? transitionOffsets[state + 1] : transitions.length;
-        if (beginOffset + pointOffset >= endOffset) {
+        int offset = transitionOffsets[state] + pointOffset;
+        return offset < getEndOffset(state) ? offset : -1;
+    }
+
+    @Override
+    public int step(int state, char c) {
+        int offset = getTransitionOffset(state, c);
+        return offset == -1 ? -1 : transitions[offset];
+    }
+
+    public boolean hasEntryNumbers() {
+        return entryRanks != null;
+    }
+
+    public int getNumberOfEntries() {
+        return entryRanks != null ? entries : -1;
+    }
+
+    public int getEntryNumber(CharSequence s, int start, int end) {
+        if (entryRanks == null) {
             return -1;
         }
-        return transitions[beginOffset + pointOffset];
+        int state = initial;
+        int number = 0;
+        for (int i = start; i < end; i++) {
+            int offset = getTransitionOffset(state, s.charAt(i));
+            if (offset == -1 || transitions[offset] == -1) {
+                return -1;
+            }
+            number += entryRanks[offset];
+            state = transitions[offset];
+        }
+        return accept[state] ? number : -1;
+    }
+
+    public String getEntry(int number) {
+        if (entryRanks == null || number < 0 || number >= entries) {
+            return null;
+        }
+        StringBuilder entry = new StringBuilder();
+        int state = initial;
+        while (!accept[state] || number > 0) {
+            // follow the last transition whose preceding strings do not exceed the number
+            int chosen = -1;
+            for (int offset = transitionOffsets[state]; offset < getEndOffset(state); offset++) {
+                if (transitions[offset] != -1) {
+                    if (entryRanks[offset] > number) {
+                        break;
+                    }
+                    chosen = offset;
+                }
+            }
+            number -= entryRanks[chosen];
+            entry.append(points[transitionPoints[state] + chosen - transitionOffsets[state]]);
+            state = transitions[chosen];
+        }
+        return entry.toString();
     }
 }
@@ -0,0 +1,309 @@
+package dk.brics.automaton;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A {@link CompressedRunAutomaton} that is read in place from a memory-mapped file instead of being
+ * deserialized onto the heap. Several JVMs mapping the same file share its pages through the OS page cache.
+ *
+ * The file is a flat sequence of little-endian ints:
+ * magic, version, size, initial, number of points, number of transitions, number of entries (-1 if not numbered),
+ * points, accept bitset, classmap, transitionOffsets, transitionPoints, transitions and, if numbered, the entry
+ * ranks of the transitions (see {@link NumberedAutomaton}). Files of version 1 lack the number of entries
+ * and the ranks.
+ */
+public class MappedRunAutomaton extends RunAutomaton implements NumberedAutomaton {
+    public static final int MAGIC = 0x31415243; // "CRA1"
+    public static final int VERSION = 2;
+    private static final int HEADER_SIZE_V1 = 6;
+    private static final int HEADER_SIZE = 7;
+    private static final int CLASSMAP_SIZE = Character.MAX_VALUE - Character.MIN_VALUE + 1;
+
+    private IntBuffer acceptBits;
+    private IntBuffer classes;
+    private IntBuffer transitionOffsets;
+    private IntBuffer transitionPoints;
+    private IntBuffer transitionTable;
+    private IntBuffer entryRanks;
+    private int transitionsLength;
+    private int entries = -1;
+
+    private MappedRunAutomaton() {
+        super(Automaton.makeAnyChar());
+        classmap = null;
+    }
+
+    /**
+     * Maps an automaton written by {@link #store(RunAutomaton, File)}.
+     * @param file the automaton file
+     * @return the mapped automaton
+     * @throws IOException if the file cannot be read or is not an automaton file
+     */
+    public static MappedRunAutomaton load(File file) throws IOException {
+        return load(file, 0);
+    }
+
+    /**
+     * Maps an automaton written by {@link #store(RunAutomaton, File)} that starts at the given byte offset of a file,
+     * e.g. as part of a larger file.
+     * @param file the file containing the automaton
+     * @param offset the position of the automaton in the file, a multiple of 4
+     * @return the mapped automaton
+     * @throws IOException if the file cannot be read or does not contain an automaton at the offset
+     */
+    public static MappedRunAutomaton load(File file, long offset) throws IOException {
+        FileInputStream in = new FileInputStream(file);
+        try {
+            FileChannel channel = in.getChannel();
+            IntBuffer header = map(channel, offset, 0, HEADER_SIZE_V1);
+            if (header.get(0) != MAGIC) {
+                throw new IOException(file + " is not a mapped automaton file");
+            }
+            int version = header.get(1);
+            if (version != 1 && version != VERSION) {
+                throw new IOException(file + " has unsupported version " + version);
+            }
+            int headerSize = version == 1 ? HEADER_SIZE_V1 : HEADER_SIZE;
+            header = map(channel, offset, 0, headerSize);
+
+            MappedRunAutomaton automaton = new MappedRunAutomaton();
+            automaton.size = header.get(2);
+            automaton.initial = header.get(3);
+            int pointsLength = header.get(4);
+            automaton.transitionsLength = header.get(5);
+            automaton.entries = version == 1 ? -1 : header.get(6);
+
+            long position = headerSize;
+            IntBuffer pointBuffer = map(channel, offset, position, pointsLength);
+            automaton.points = new char[pointsLength];
+            for (int i = 0; i < pointsLength; i++) {
+                automaton.points[i] = (char) pointBuffer.get(i);
+            }
+            position += pointsLength;
+            automaton.acceptBits = map(channel, offset, position, acceptLength(automaton.size));
+            position += acceptLength(automaton.size);
+            automaton.classes = map(channel, offset, position, CLASSMAP_SIZE);
+            position += CLASSMAP_SIZE;
+            automaton.transitionOffsets = map(channel, offset, position, automaton.size);
+            position += automaton.size;
+            automaton.transitionPoints = map(channel, offset, position, automaton.size);
+            position += automaton.size;
+            automaton.transitionTable = map(channel, offset, position, automaton.transitionsLength);
+            position += automaton.transitionsLength;
+            if (automaton.entries != -1) {
+                automaton.entryRanks = map(channel, offset, position, automaton.transitionsLength);
+            }
+            return automaton;
+        } finally {
+            // the mappings stay valid after the channel is closed
+            in.close();
+        }
+    }
+
+    /**
+     * Returns whether the given file starts with the magic number of a mapped automaton file.
+     */
+    public static boolean isMappedAutomaton(File file) throws IOException {
+        if (file.length() < HEADER_SIZE_V1 * 4) {
+            return false;
+        }
+        FileInputStream in = new FileInputStream(file);
+        try {
+            ByteBuffer magic = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+            in.getChannel().read(magic, 0);
+            return magic.getInt(0) == MAGIC;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Writes an automaton in the flat layout that can be mapped by {@link #load(File)}.
+     * @param runAutomaton the automaton, converted to a {@link CompressedRunAutomaton} if necessary
+     * @param file the output file
+     * @throws IOException
+     */
+    public static void store(RunAutomaton runAutomaton, File file) throws IOException {
+        CompressedRunAutomaton automaton = runAutomaton instanceof CompressedRunAutomaton ?
+                (CompressedRunAutomaton) runAutomaton : new CompressedRunAutomaton(runAutomaton);
+        int[] classmap = automaton.classmap;
+        if (classmap == null) {
+            classmap = new int[CLASSMAP_SIZE];
+            for (int c = 0; c < CLASSMAP_SIZE; c++) {
+                classmap[c] = automaton.getCharClass((char) c);
+            }
+        }
+        int[] points = new int[automaton.points.length];
+        for (int i = 0; i < points.length; i++) {
+            points[i] = automaton.points[i];
+        }
+        int[] acceptBits = new int[acceptLength(automaton.size)];
+        for (int state = 0; state < automaton.size; state++) {
+            if (automaton.accept[state]) {
+                acceptBits[state >>> 5] |= 1 << (state & 31);
+            }
+        }
+
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            FileChannel channel = out.getChannel();
+            ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+            write(channel, buffer, new int[] {MAGIC, VERSION, automaton.size, automaton.initial,
+                    points.length, automaton.transitions.length, automaton.getNumberOfEntries()});
+            write(channel, buffer, points);
+            write(channel, buffer, acceptBits);
+            write(channel, buffer, classmap);
+            write(channel, buffer, automaton.transitionOffsets);
+            write(channel, buffer, automaton.transitionPoints);
+            write(channel, buffer, automaton.transitions);
+            if (automaton.hasEntryNumbers()) {
+                write(channel, buffer, automaton.entryRanks);
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    private static int acceptLength(int size) {
+        return (size + 31) >>> 5;
+    }
+
+    private static IntBuffer map(FileChannel channel, long offset, long intPosition, int intLength) throws IOException {
+        if ((long) intLength * 4 > Integer.MAX_VALUE) {
+            throw new IOException("automaton section of " + intLength + " ints is too large to be mapped");
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, offset + intPosition * 4, (long) intLength * 4)
+                .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+    }
+
+    private static void write(FileChannel channel, ByteBuffer buffer, int[] values) throws IOException {
+        for (int value : values) {
+            if (buffer.remaining() < 4) {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                buffer.clear();
+            }
+            buffer.putInt(value);
+        }
+    }
+
+    private int getEndOffset(int state) {
+        return state + 1 < size ? transitionOffsets.get(state + 1) : transitionsLength;
+    }
+
+    /**
+     * @return the index of the transition of a state for a character, or -1 if there is none
+     */
+    private int getTransitionOffset(int state, char c) {
+        int pointOffset = classes.get(c - Character.MIN_VALUE) - transitionPoints.get(state);
+        if (pointOffset < 0) {
+            return -1;
+        }
+        int offset = transitionOffsets.get(state) + pointOffset;
+        return offset < getEndOffset(state) ? offset : -1;
+    }
+
+    @Override
+    public int step(int state, char c) {
+        int offset = getTransitionOffset(state, c);
+        return offset == -1 ? -1 : transitionTable.get(offset);
+    }
+
+    public boolean hasEntryNumbers() {
+        return entryRanks != null;
+    }
+
+    public int getNumberOfEntries() {
+        return entries;
+    }
+
+    public int getEntryNumber(CharSequence s, int start, int end) {
+        if (entryRanks == null) {
+            return -1;
+        }
+        int state = initial;
+        int number = 0;
+        for (int i = start; i < end; i++) {
+            int offset = getTransitionOffset(state, s.charAt(i));
+            if (offset == -1 || transitionTable.get(offset) == -1) {
+                return -1;
+            }
+            number += entryRanks.get(offset);
+            state = transitionTable.get(offset);
+        }
+        return isAccept(state) ? number : -1;
+    }
+
+    public String getEntry(int number) {
+        if (entryRanks == null || number < 0 || number >= entries) {
+            return null;
+        }
+        StringBuilder entry = new StringBuilder();
+        int state = initial;
+        while (!isAccept(state) || number > 0) {
+            // follow the last transition whose preceding strings do not exceed the number
+            int chosen = -1;
+            int endOffset = getEndOffset(state);
+            for (int offset = transitionOffsets.get(state); offset < endOffset; offset++) {
+                if (transitionTable.get(offset) != -1) {
+                    if (entryRanks.get(offset) > number) {
+                        break;
+                    }
+                    chosen = offset;
+                }
+            }
+            number -= entryRanks.get(chosen);
+            entry.append(points[transitionPoints.get(state) + chosen - transitionOffsets.get(state)]);
+            state = transitionTable.get(chosen);
+        }
+        return entry.toString();
+    }
+
+    @Override
+    public boolean isAccept(int state) {
+        return (acceptBits.get(state >>> 5) & (1 << (state & 31))) != 0;
+    }
+
+    @Override
+    public boolean run(String s) {
+        int p = initial;
+        for (int i = 0; i < s.length() && p != -1; i++) {
+            p = step(p, s.charAt(i));
+        }
+        return p != -1 && isAccept(p);
+    }
+
+    @Override
+    public int run(String s, int offset) {
+        int p = initial;
+        int max = -1;
+        for (int i = offset; p != -1; i++) {
+            if (isAccept(p)) {
+                max = i - offset;
+            }
+            if (i == s.length()) {
+                break;
+            }
+            p = step(p, s.charAt(i));
+        }
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        return "mapped automaton with " + size + " states and " + transitionsLength + " transitions";
+    }
+}
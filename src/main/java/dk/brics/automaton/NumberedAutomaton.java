@@ -0,0 +1,31 @@
+package dk.brics.automaton;
+
+/**
+ * A run automaton of a finite language that numbers the strings it accepts. The entry number of a string is the
+ * number of accepted strings preceding it in the order of the character classes, so the entries are numbered
+ * from 0 to {@link #getNumberOfEntries()} - 1 without gaps and can directly index an array of records.
+ *
+ * Strings whose characters fall into the same character classes share an entry number. This does not happen
+ * for automata built from a set of strings, where every used character class consists of a single character.
+ */
+public interface NumberedAutomaton {
+    /**
+     * @return whether entry numbers are available, i.e. whether the language of the automaton is finite
+     */
+    boolean hasEntryNumbers();
+
+    /**
+     * @return the number of accepted strings
+     */
+    int getNumberOfEntries();
+
+    /**
+     * @return the entry number of {@code s.subSequence(start, end)} or -1 if it is not accepted
+     */
+    int getEntryNumber(CharSequence s, int start, int end);
+
+    /**
+     * @return the accepted string with the given entry number, or null if there is no such entry
+     */
+    String getEntry(int number);
+}
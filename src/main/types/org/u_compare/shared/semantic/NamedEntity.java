@@ -5,6 +5,7 @@ package org.u_compare.shared.semantic;
 
 import org.apache.uima.jcas.JCas;
 import org.apache.uima.jcas.JCasRegistry;
+import org.apache.uima.jcas.cas.StringArray;
 import org.apache.uima.jcas.cas.TOP_Type;
 
 
@@ -128,6 +129,38 @@ public class NamedEntity extends SemanticClassAnnotation {
     jcasType.ll_cas.ll_setStringValue(addr, ((NamedEntity_Type)jcasType).casFeatCode_id, v);}    
    
     
-}
+  //*--------------*
+  //* Feature: ids
+
+  /** getter for ids - gets the normalized ids, indexed by the ordinals of Constants.ChemicalID
+   * @generated */
+  public StringArray getIds() {
+    if (NamedEntity_Type.featOkTst && ((NamedEntity_Type)jcasType).casFeat_ids == null)
+      jcasType.jcas.throwFeatMissing("ids", "org.u_compare.shared.semantic.NamedEntity");
+    return (StringArray)(jcasType.ll_cas.ll_getFSForRef(jcasType.ll_cas.ll_getRefValue(addr, ((NamedEntity_Type)jcasType).casFeatCode_ids)));}
+    
+  /** setter for ids - sets the normalized ids, indexed by the ordinals of Constants.ChemicalID 
+   * @generated */
+  public void setIds(StringArray v) {
+    if (NamedEntity_Type.featOkTst && ((NamedEntity_Type)jcasType).casFeat_ids == null)
+      jcasType.jcas.throwFeatMissing("ids", "org.u_compare.shared.semantic.NamedEntity");
+    jcasType.ll_cas.ll_setRefValue(addr, ((NamedEntity_Type)jcasType).casFeatCode_ids, jcasType.ll_cas.ll_getFSRef(v));}    
+    
+  /** indexed getter for ids - gets an indexed value - 
+   * @generated */
+  public String getIds(int i) {
+    if (NamedEntity_Type.featOkTst && ((NamedEntity_Type)jcasType).casFeat_ids == null)
+      jcasType.jcas.throwFeatMissing("ids", "org.u_compare.shared.semantic.NamedEntity");
+    jcasType.jcas.checkArrayBounds(jcasType.ll_cas.ll_getRefValue(addr, ((NamedEntity_Type)jcasType).casFeatCode_ids), i);
+    return jcasType.ll_cas.ll_getStringArrayValue(jcasType.ll_cas.ll_getRefValue(addr, ((NamedEntity_Type)jcasType).casFeatCode_ids), i);}
+
+  /** indexed setter for ids - sets an indexed value - 
+   * @generated */
+  public void setIds(int i, String v) { 
+    if (NamedEntity_Type.featOkTst && ((NamedEntity_Type)jcasType).casFeat_ids == null)
+      jcasType.jcas.throwFeatMissing("ids", "org.u_compare.shared.semantic.NamedEntity");
+    jcasType.jcas.checkArrayBounds(jcasType.ll_cas.ll_getRefValue(addr, ((NamedEntity_Type)jcasType).casFeatCode_ids), i);
+    jcasType.ll_cas.ll_setStringArrayValue(jcasType.ll_cas.ll_getRefValue(addr, ((NamedEntity_Type)jcasType).casFeatCode_ids), i, v);}
+  }
 
     
\ No newline at end of file
@@ -114,6 +114,43 @@ public class NamedEntity_Type extends SemanticClassAnnotation_Type {
     
   
  
+  /** @generated */
+  final Feature casFeat_ids;
+  /** @generated */
+  final int     casFeatCode_ids;
+  /** @generated */ 
+  public int getIds(int addr) {
+        if (featOkTst && casFeat_ids == null)
+      jcas.throwFeatMissing("ids", "org.u_compare.shared.semantic.NamedEntity");
+    return ll_cas.ll_getRefValue(addr, casFeatCode_ids);
+  }
+  /** @generated */    
+  public void setIds(int addr, int v) {
+        if (featOkTst && casFeat_ids == null)
+      jcas.throwFeatMissing("ids", "org.u_compare.shared.semantic.NamedEntity");
+    ll_cas.ll_setRefValue(addr, casFeatCode_ids, v);}
+    
+   /** @generated */
+  public String getIds(int addr, int i) {
+        if (featOkTst && casFeat_ids == null)
+      jcas.throwFeatMissing("ids", "org.u_compare.shared.semantic.NamedEntity");
+    if (lowLevelTypeChecks)
+      return ll_cas.ll_getStringArrayValue(ll_cas.ll_getRefValue(addr, casFeatCode_ids), i, true);
+    jcas.checkArrayBounds(ll_cas.ll_getRefValue(addr, casFeatCode_ids), i);
+  return ll_cas.ll_getStringArrayValue(ll_cas.ll_getRefValue(addr, casFeatCode_ids), i);
+  }
+   
+  /** @generated */ 
+  public void setIds(int addr, int i, String v) {
+        if (featOkTst && casFeat_ids == null)
+      jcas.throwFeatMissing("ids", "org.u_compare.shared.semantic.NamedEntity");
+    if (lowLevelTypeChecks)
+      ll_cas.ll_setStringArrayValue(ll_cas.ll_getRefValue(addr, casFeatCode_ids), i, v, true);
+    jcas.checkArrayBounds(ll_cas.ll_getRefValue(addr, casFeatCode_ids), i);
+    ll_cas.ll_setStringArrayValue(ll_cas.ll_getRefValue(addr, casFeatCode_ids), i, v);
+  }
+ 
+ 
   /** initialize variables to correspond with Cas Type and Features
 	* @generated */
   public NamedEntity_Type(JCas jcas, Type casType) {
@@ -129,6 +166,10 @@ public class NamedEntity_Type extends SemanticClassAnnotation_Type {
     casFeatCode_id  = (null == casFeat_id) ? JCas.INVALID_FEATURE_CODE : ((FeatureImpl)casFeat_id).getCode();
 
  
+    casFeat_ids = jcas.getRequiredFeatureDE(casType, "ids", "uima.cas.StringArray", featOkTst);
+    casFeatCode_ids  = (null == casFeat_ids) ? JCas.INVALID_FEATURE_CODE : ((FeatureImpl)casFeat_ids).getCode();
+
+ 
     casFeat_entityType = jcas.getRequiredFeatureDE(casType, "entityType", "uima.cas.String", featOkTst);
     casFeatCode_entityType  = (null == casFeat_entityType) ? JCas.INVALID_FEATURE_CODE : ((FeatureImpl)casFeat_entityType).getCode();
 